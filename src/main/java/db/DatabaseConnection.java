@@ -10,28 +10,42 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 public class DatabaseConnection {
-    private static Connection connection;
+    private static volatile String databasePath;
 
     private DatabaseConnection() {}
 
+    // Every caller gets its own connection and closes it when done, so background
+    // workers never share (or close) a connection that another thread is using
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                Class.forName("org.sqlite.JDBC");
-                String dbPath = findDatabasePath();
-                connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-                connection.createStatement().execute("PRAGMA foreign_keys = ON");
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("SQLite JDBC driver not found", e);
-            }
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + getDatabasePath());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA busy_timeout = 5000");
         }
         return connection;
     }
 
-    public static void closeConnection() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+    public static String getDatabasePath() throws SQLException {
+        if (databasePath == null) {
+            synchronized (DatabaseConnection.class) {
+                if (databasePath == null) {
+                    String path = findDatabasePath();
+                    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+                         Statement stmt = connection.createStatement()) {
+                        // WAL lets readers keep working while another connection writes
+                        stmt.execute("PRAGMA journal_mode = WAL");
+                    }
+                    databasePath = path;
+                }
+            }
         }
+        return databasePath;
     }
 
     public static void initializeDatabase(String sqlFilePath) {
@@ -9,15 +9,23 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class DatabaseInitializer {
     private static final String SCHEMA_SCRIPT = "/sql_scripts/schema_init.sql";
     private static final String SAMPLE_DATA_SCRIPT = "/sql_scripts/sample_data.sql";
+    private static final String[] SEARCH_TABLES = {"customers_fts", "wands_fts"};
 
     public static void initializeDatabase() throws SQLException, IOException {
         try (Connection conn = DatabaseConnection.getConnection()) {
             System.out.println("CREATING TABLES...");
+            addMissingColumns(conn);
+            List<String> newSearchTables = missingTables(conn, SEARCH_TABLES);
             executeSqlScript(conn, SCHEMA_SCRIPT);
+            rebuildSearchTables(conn, newSearchTables);
 
             System.out.println("EMPTY DB, POPULATING...");
             executeSqlScript(conn, SAMPLE_DATA_SCRIPT);
@@ -26,6 +34,52 @@ public class DatabaseInitializer {
         }
     }
 
+    // CREATE TABLE IF NOT EXISTS leaves existing tables alone, so columns added later are patched in here
+    private static void addMissingColumns(Connection conn) throws SQLException {
+        addColumnIfMissing(conn, "inventory_deliveries", "order_date", "TEXT");
+        addColumnIfMissing(conn, "idempotency_keys", "fingerprint", "TEXT");
+    }
+
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition)
+            throws SQLException {
+        boolean tableExists = false;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                tableExists = true;
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        if (tableExists) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            }
+        }
+    }
+
+    private static List<String> missingTables(Connection conn, String... tables) throws SQLException {
+        List<String> missing = new ArrayList<>();
+        for (String table : tables) {
+            try (ResultSet rs = conn.getMetaData().getTables(null, null, table, null)) {
+                if (!rs.next()) {
+                    missing.add(table);
+                }
+            }
+        }
+        return missing;
+    }
+
+    // External-content FTS tables start empty, so rows that existed before the table was created are indexed here
+    private static void rebuildSearchTables(Connection conn, List<String> tables) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : tables) {
+                stmt.execute("INSERT INTO " + table + " (" + table + ") VALUES ('rebuild')");
+            }
+        }
+    }
+
     private static void executeSqlScript(Connection conn, String scriptPath)
             throws SQLException, IOException {
         try (InputStream is = DatabaseInitializer.class.getResourceAsStream(scriptPath);
@@ -39,9 +93,7 @@ public class DatabaseInitializer {
                 sb.append(line).append("\n");
             }
 
-            String[] queries = sb.toString().split(";(?=([^']*'[^']*')*[^']*$)");
-
-            for (String query : queries) {
+            for (String query : splitStatements(sb.toString())) {
                 if (!query.trim().isEmpty()) {
                     stmt.execute(query);
                 }
@@ -49,6 +101,49 @@ public class DatabaseInitializer {
         }
     }
 
+    private static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+
+        for (int i = 0; i < script.length(); i++) {
+            char ch = script.charAt(i);
+            current.append(ch);
+
+            if (ch == '\'') {
+                inQuotes = !inQuotes;
+            } else if (ch == ';' && !inQuotes && !isInsideTriggerBody(current)) {
+                statements.add(current.substring(0, current.length() - 1));
+                current.setLength(0);
+            }
+        }
+        statements.add(current.toString());
+        return statements;
+    }
+
+    // Trigger bodies contain their own semicolons, the statement only ends at the matching END
+    private static boolean isInsideTriggerBody(CharSequence statement) {
+        String sql = statement.toString()
+                .replaceAll("'[^']*'", "''")
+                .replaceAll("--[^\n]*", "")
+                .trim()
+                .toUpperCase();
+
+        if (!sql.startsWith("CREATE TRIGGER")) {
+            return false;
+        }
+        return countKeyword(sql, "BEGIN") + countKeyword(sql, "CASE") > countKeyword(sql, "END");
+    }
+
+    private static int countKeyword(String sql, String keyword) {
+        Matcher matcher = Pattern.compile("\\b" + keyword + "\\b").matcher(sql);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
     private static boolean isDatabaseEmpty(Connection conn) throws SQLException {
         try (ResultSet rs = conn.getMetaData().getTables(null, null, "%", null)) {
             return !rs.next();
@@ -0,0 +1,154 @@
+package gui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Text field that shows a suggestion popup while typing. Suggestions come from
+ * the given lookup function; picking one sets it as the selected item.
+ */
+public class AutoCompleteField<T> extends JTextField {
+
+    public interface SuggestionSource<T> {
+        List<T> suggest(String prefix) throws Exception;
+    }
+
+    private final SuggestionSource<T> source;
+    private final Function<T, String> labeler;
+    private final DefaultListModel<T> listModel = new DefaultListModel<>();
+    private final JList<T> suggestionList = new JList<>(listModel);
+    private final JPopupMenu popup = new JPopupMenu();
+    private T selectedItem;
+    private boolean updatingText;
+
+    public AutoCompleteField(SuggestionSource<T> source, Function<T, String> labeler) {
+        this.source = source;
+        this.labeler = labeler;
+
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setFocusable(false);
+        suggestionList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                @SuppressWarnings("unchecked")
+                String label = labeler.apply((T) value);
+                return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+            }
+        });
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                acceptSelection();
+            }
+        });
+
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(suggestionList));
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                textChanged();
+            }
+        });
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                int index = suggestionList.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        suggestionList.setSelectedIndex(Math.min(index + 1, listModel.size() - 1));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        suggestionList.setSelectedIndex(Math.max(index - 1, 0));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        acceptSelection();
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
+    public T getSelectedItem() {
+        return selectedItem;
+    }
+
+    private void textChanged() {
+        if (updatingText) {
+            return;
+        }
+        selectedItem = null;
+        SwingUtilities.invokeLater(this::refreshSuggestions);
+    }
+
+    private void refreshSuggestions() {
+        listModel.clear();
+        try {
+            for (T item : source.suggest(getText())) {
+                listModel.addElement(item);
+            }
+        } catch (Exception e) {
+            popup.setVisible(false);
+            return;
+        }
+
+        if (listModel.isEmpty() || !isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+
+        suggestionList.setSelectedIndex(0);
+        suggestionList.setVisibleRowCount(Math.min(listModel.size(), 8));
+        popup.setPopupSize(getWidth(), suggestionList.getPreferredScrollableViewportSize().height + 6);
+        popup.show(this, 0, getHeight());
+        requestFocusInWindow();
+    }
+
+    private void acceptSelection() {
+        T item = suggestionList.getSelectedValue();
+        if (item == null) {
+            return;
+        }
+        updatingText = true;
+        try {
+            setText(labeler.apply(item));
+        } finally {
+            updatingText = false;
+        }
+        selectedItem = item;
+        popup.setVisible(false);
+    }
+}
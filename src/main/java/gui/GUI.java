@@ -10,6 +10,7 @@ import java.awt.*;
 import java.awt.event.ActionListener;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -26,9 +27,33 @@ public class GUI extends JFrame {
     private final CustomerService customerService = new CustomerService();
     private final InventoryService inventoryService = new InventoryService();
     private final DeliveryService deliveryService = new DeliveryService();
+    private final ManifestImporter manifestImporter = new ManifestImporter();
+    private final JLabel stockAlertLabel = new JLabel(" ");
+    // Holder name for the wands this terminal allocates
+    private final String terminalName = terminalName();
 
     public GUI() {
         initializeUI();
+        warmUpIndexes();
+        ReportScheduler.getInstance().start();
+    }
+
+    // Builds the in-memory lookup structures in the background so the first dialogs open instantly
+    private void warmUpIndexes() {
+        Thread warmUp = new Thread(() -> {
+            try {
+                LicenseRegistry.getInstance().rebuild();
+                CustomerLookupIndex.getInstance().reload();
+                StockAlertService.getInstance().start();
+                DemandForecastService.getInstance().preload();
+                IdempotencyService.getInstance().purgeOlderThan(IdempotencyService.RETENTION_DAYS);
+                WandAllocationIndex.getInstance().start();
+            } catch (SQLException e) {
+                System.err.println("Failed to build lookup indexes: " + e.getMessage());
+            }
+        }, "index-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
     }
 
     private void initializeUI() {
@@ -57,10 +82,137 @@ public class GUI extends JFrame {
         resetButton.setForeground(Color.RED);
         resetButton.addActionListener(e -> resetDatabase());
 
+        stockAlertLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        stockAlertLabel.setForeground(Color.RED);
+        stockAlertLabel.setBorder(BorderFactory.createEmptyBorder(10, 20, 0, 20));
+        StockAlertService.getInstance().addListener(new StockAlertService.AlertListener() {
+            @Override
+            public void alertRaised(StockAlert alert) {
+                SwingUtilities.invokeLater(() -> updateStockAlertLabel());
+            }
+
+            @Override
+            public void alertCleared(StockAlert alert) {
+                SwingUtilities.invokeLater(() -> updateStockAlertLabel());
+            }
+        });
+
+        add(stockAlertLabel, BorderLayout.NORTH);
         add(mainPanel, BorderLayout.CENTER);
         add(resetButton, BorderLayout.SOUTH);
     }
 
+    private void updateStockAlertLabel() {
+        List<StockAlert> alerts = StockAlertService.getInstance().getActiveAlerts();
+        if (alerts.isEmpty()) {
+            stockAlertLabel.setText(" ");
+            stockAlertLabel.setToolTipText(null);
+            return;
+        }
+        StringBuilder details = new StringBuilder("<html>");
+        for (StockAlert alert : alerts) {
+            details.append(alert).append("<br>");
+        }
+        stockAlertLabel.setText("Low stock: " + alerts.size() + " component(s) at or below reorder level");
+        stockAlertLabel.setToolTipText(details.append("</html>").toString());
+    }
+
+    // Reserves the oldest in-stock wand matching the customer's wish; true if one was reserved
+    private boolean showAllocateWandDialog(JFrame parent) {
+        try {
+            String any = "Any";
+            List<String> woods = new ArrayList<>(List.of(any));
+            woods.addAll(wandService.getAllWoodNames());
+            List<String> cores = new ArrayList<>(List.of(any));
+            cores.addAll(wandService.getAllCoreMaterials());
+
+            JComboBox<String> woodCombo = new JComboBox<>(woods.toArray(new String[0]));
+            JComboBox<String> coreCombo = new JComboBox<>(cores.toArray(new String[0]));
+            JTextField lengthField = new JTextField();
+            styleComboBox(woodCombo);
+            styleComboBox(coreCombo);
+            styleTextField(lengthField);
+
+            JPanel formPanel = new JPanel(new GridLayout(0, 2, 10, 10));
+            formPanel.add(createStyledLabel("Wood:"));
+            formPanel.add(woodCombo);
+            formPanel.add(createStyledLabel("Core:"));
+            formPanel.add(coreCombo);
+            formPanel.add(createStyledLabel("Length (whole inches, optional):"));
+            formPanel.add(lengthField);
+
+            int result = JOptionPane.showConfirmDialog(parent, formPanel, "Allocate Wand",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (result != JOptionPane.OK_OPTION) {
+                return false;
+            }
+
+            AllocationCriteria criteria = new AllocationCriteria();
+            if (!any.equals(woodCombo.getSelectedItem())) {
+                criteria.setWoodId(wandService.getWoodIdByName((String) woodCombo.getSelectedItem()));
+            }
+            if (!any.equals(coreCombo.getSelectedItem())) {
+                criteria.setCoreId(wandService.getCoreIdByMaterial((String) coreCombo.getSelectedItem()));
+            }
+            if (!lengthField.getText().trim().isEmpty()) {
+                criteria.setLengthInches(Integer.parseInt(lengthField.getText().trim()));
+            }
+
+            WandAllocation allocation = WandAllocationIndex.getInstance()
+                    .allocateNext(criteria, terminalName, WandAllocationIndex.DEFAULT_TTL_MILLIS);
+            if (allocation == null) {
+                JOptionPane.showMessageDialog(parent, "No matching wand in stock");
+                return false;
+            }
+            String until = java.time.Instant.ofEpochMilli(allocation.getExpiresAt())
+                    .atZone(java.time.ZoneId.systemDefault()).format(DateTimeFormatter.ofPattern("HH:mm"));
+            JOptionPane.showMessageDialog(parent, "Wand #" + allocation.getWandId()
+                    + " is now reserved for this terminal until " + until);
+            return true;
+        } catch (NumberFormatException e) {
+            showError("Length must be a whole number of inches");
+        } catch (SQLException e) {
+            showError("Allocation failed: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // Puts a wand this terminal allocated back in stock; true if it was released
+    private boolean releaseAllocatedWand(int wandId) {
+        try {
+            WandAllocation allocation = allocationFor(wandId);
+            if (allocation == null) {
+                showError("Wand #" + wandId + " is not reserved by this terminal");
+            } else if (!WandAllocationIndex.getInstance().release(allocation)) {
+                showError("Wand #" + wandId + " is no longer reserved");
+            } else {
+                JOptionPane.showMessageDialog(this, "Wand #" + wandId + " is back in stock");
+                return true;
+            }
+        } catch (SQLException e) {
+            showError("Release failed: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // The wand's allocation if this terminal holds it, otherwise null
+    private WandAllocation allocationFor(int wandId) throws SQLException {
+        for (WandAllocation allocation : WandAllocationIndex.getInstance().getAllocations(terminalName)) {
+            if (allocation.getWandId() == wandId) {
+                return allocation;
+            }
+        }
+        return null;
+    }
+
+    private static String terminalName() {
+        try {
+            return System.getProperty("user.name") + "@" + java.net.InetAddress.getLocalHost().getHostName();
+        } catch (java.net.UnknownHostException e) {
+            return System.getProperty("user.name");
+        }
+    }
+
     private JButton createMenuButton(String text, Runnable action) {
         JButton button = new JButton(text);
         styleButton(button, PRIMARY_COLOR, Color.WHITE, 18, true);
@@ -227,9 +379,35 @@ public class GUI extends JFrame {
 
         addButton.setPreferredSize(new Dimension(180, 40));
 
+        JButton allocateButton = createMenuButton("Allocate", () -> {
+            if (showAllocateWandDialog(parentFrame)) {
+                parentFrame.dispose();
+                showWandInventory();
+            }
+        });
+
+        allocateButton.setPreferredSize(new Dimension(180, 40));
+
+        JButton releaseButton = createMenuButton("Release", () -> {
+            int selectedRow = table.getSelectedRow();
+            if (selectedRow >= 0) {
+                int wandId = (int) table.getValueAt(selectedRow, 0);
+                if (releaseAllocatedWand(wandId)) {
+                    parentFrame.dispose();
+                    showWandInventory();
+                }
+            } else {
+                showError("Please select a wand first");
+            }
+        });
+
+        releaseButton.setPreferredSize(new Dimension(180, 40));
+
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(addButton);
+        buttonPanel.add(allocateButton);
+        buttonPanel.add(releaseButton);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         tablePanel.add(buttonPanel, BorderLayout.SOUTH);
@@ -297,6 +475,30 @@ public class GUI extends JFrame {
             styleComboBox(statusCombo);
             formPanel.add(statusCombo);
 
+            // Hold the selected wood and core while the form is open so a colleague cannot use the last unit
+            formPanel.add(createStyledLabel("Stock:"));
+            JLabel stockLabel = createStyledLabel("");
+            formPanel.add(stockLabel);
+
+            Reservation[] reservation = new Reservation[1];
+            Runnable reserveComponents = () -> {
+                try {
+                    if (reservation[0] != null) {
+                        ReservationService.getInstance().release(reservation[0]);
+                    }
+                    reservation[0] = ReservationService.getInstance().tryReserve(
+                            wandService.getWoodIdByName((String) woodCombo.getSelectedItem()),
+                            wandService.getCoreIdByMaterial((String) coreCombo.getSelectedItem()),
+                            ReservationService.DEFAULT_TTL_MILLIS);
+                    stockLabel.setText(reservation[0] != null ? "Components reserved" : "Not enough stock");
+                } catch (SQLException ex) {
+                    stockLabel.setText("Stock check failed");
+                }
+            };
+            woodCombo.addActionListener(e -> reserveComponents.run());
+            coreCombo.addActionListener(e -> reserveComponents.run());
+            reserveComponents.run();
+
             JButton saveButton = createMenuButton("Save Wand", () -> {
                 try {
                     String woodName = (String) woodCombo.getSelectedItem();
@@ -314,7 +516,13 @@ public class GUI extends JFrame {
                             notesField.getText()
                     );
 
-                    if (wandService.createWand(newWand)) {
+                    // An expired hold falls back to reserving again at save time
+                    boolean held = reservation[0] != null && ReservationService.getInstance().isActive(reservation[0]);
+                    boolean created = held
+                            ? wandService.createWand(newWand, reservation[0])
+                            : wandService.createWand(newWand);
+                    reservation[0] = null;
+                    if (created) {
                         JOptionPane.showMessageDialog(dialog, "Wand added successfully!");
                         dialog.dispose();
                     }
@@ -328,6 +536,11 @@ public class GUI extends JFrame {
             dialog.add(formPanel, BorderLayout.CENTER);
             dialog.add(saveButton, BorderLayout.SOUTH);
             dialog.setVisible(true);
+
+            // Modal dialog is closed at this point; give back an unused hold
+            if (reservation[0] != null) {
+                ReservationService.getInstance().release(reservation[0]);
+            }
         } catch (SQLException e) {
             showError("Failed to load wood/core data: " + e.getMessage());
         }
@@ -479,7 +692,19 @@ public class GUI extends JFrame {
         });
         addButton.setPreferredSize(new Dimension(180, 40));
 
+        JButton fittingButton = createMenuButton("Wand Fitting", () -> {
+            int selectedRow = table.getSelectedRow();
+            if (selectedRow >= 0) {
+                int customerId = (int) table.getValueAt(selectedRow, 0);
+                showWandRecommendations(parentFrame, customerId);
+            } else {
+                showError("Please select a customer first");
+            }
+        });
+        fittingButton.setPreferredSize(new Dimension(180, 40));
+
         buttonPanel.add(editButton);
+        buttonPanel.add(fittingButton);
         buttonPanel.add(addButton);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
@@ -490,6 +715,53 @@ public class GUI extends JFrame {
     }
 
 
+    private void showWandRecommendations(JFrame parent, int customerId) {
+        try {
+            Customer customer = customerService.getCustomerById(customerId);
+            if (customer == null) {
+                showError("Customer not found");
+                return;
+            }
+
+            List<WandRecommendation> recommendations = wandService.recommendWands(customer);
+
+            String[] columns = {"Wand ID", "Wood", "Core", "Length", "Flexibility", "Price", "Fit"};
+            Object[][] data = new Object[recommendations.size()][columns.length];
+            for (int i = 0; i < recommendations.size(); i++) {
+                WandRecommendation r = recommendations.get(i);
+                data[i] = new Object[]{
+                        r.getWand().getId(),
+                        r.getWoodName(),
+                        r.getCoreMaterial(),
+                        r.getWand().getLength(),
+                        r.getWand().getFlexibility(),
+                        String.format("%,.2f", r.getWand().getPrice()),
+                        String.format("%.0f", r.getScore())
+                };
+            }
+
+            JDialog dialog = new JDialog(parent,
+                    "Best wands for " + customer.getFirstName() + " " + customer.getLastName(), true);
+            dialog.setSize(800, 450);
+            centerWindow(dialog);
+            dialog.getContentPane().setBackground(BACKGROUND_COLOR);
+
+            JTable table = createStyledTable(data, columns);
+            dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+
+            JButton closeButton = createMenuButton("Close", dialog::dispose);
+            closeButton.setPreferredSize(new Dimension(120, 40));
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+            buttonPanel.setBackground(BACKGROUND_COLOR);
+            buttonPanel.add(closeButton);
+            dialog.add(buttonPanel, BorderLayout.SOUTH);
+
+            dialog.setVisible(true);
+        } catch (SQLException e) {
+            showError("Failed to load recommendations: " + e.getMessage());
+        }
+    }
+
     private void showAddCustomerDialog(JFrame parent) {
         JDialog dialog = new JDialog(parent, "Add New Customer", true);
         dialog.setSize(500, 600);
@@ -547,6 +819,11 @@ public class GUI extends JFrame {
 
         JButton saveButton = createMenuButton("Save Customer", () -> {
             try {
+                if (!customerService.validateWandLicense(licenseField.getText())) {
+                    showError("Wand license " + licenseField.getText().trim() + " is already registered");
+                    return;
+                }
+
                 Customer newCustomer = new Customer(
                         firstNameField.getText(),
                         lastNameField.getText(),
@@ -695,8 +972,16 @@ public class GUI extends JFrame {
     }
 
     private void showSales() {
+        showSales(false);
+    }
+
+    private void showSales(boolean refresh) {
         try {
-            List<Map<String, Object>> sales = ReportingService.getAllSales();
+            ReportScheduler scheduler = ReportScheduler.getInstance();
+            ReportResult<List<Map<String, Object>>> report = refresh
+                    ? scheduler.refresh(ReportScheduler.ALL_SALES)
+                    : scheduler.getLatest(ReportScheduler.ALL_SALES);
+            List<Map<String, Object>> sales = report.getValue();
 
             JFrame frame = new JFrame("Sales Records");
             frame.setSize(1200, 700);
@@ -711,6 +996,9 @@ public class GUI extends JFrame {
             JTextField searchField = new JTextField(20);
             styleTextField(searchField);
 
+            searchPanel.add(createStyledLabel(buildRevenueSummary()));
+            searchPanel.add(createStyledLabel(formatFreshness(report)));
+
             JPanel tablePanel = new JPanel(new BorderLayout());
             tablePanel.setBackground(BACKGROUND_COLOR);
 
@@ -757,7 +1045,7 @@ public class GUI extends JFrame {
 
             JButton refreshButton = createMenuButton("Refresh", () -> {
                 frame.dispose();
-                showSales();
+                showSales(true);
             });
             refreshButton.setPreferredSize(new Dimension(180, 50));
             buttonPanel.add(refreshButton);
@@ -772,6 +1060,32 @@ public class GUI extends JFrame {
     }
 
 
+    private String formatFreshness(ReportResult<?> report) {
+        return "Data as of " + report.getComputedAt().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+    }
+
+    private String buildRevenueSummary() throws SQLException {
+        LocalDate today = LocalDate.now();
+        String currentMonth = today.toString().substring(0, 7);
+
+        double todayRevenue = 0;
+        for (Map<String, Object> row : ReportingService.getDailyRevenue(today.toString(), today.toString())) {
+            todayRevenue += (double) row.get("revenue");
+        }
+
+        double monthRevenue = 0;
+        double yearRevenue = 0;
+        for (Map<String, Object> row : ReportingService.getMonthlyRevenue(today.getYear())) {
+            yearRevenue += (double) row.get("revenue");
+            if (currentMonth.equals(row.get("period"))) {
+                monthRevenue = (double) row.get("revenue");
+            }
+        }
+
+        return String.format("Today: %,.2f   This month: %,.2f   This year: %,.2f galleons",
+                todayRevenue, monthRevenue, yearRevenue);
+    }
+
     private void showAddSaleDialog(JFrame parent) {
         JDialog dialog = new JDialog(parent, "Add New Purchase", true);
         dialog.setSize(500, 600);
@@ -784,18 +1098,21 @@ public class GUI extends JFrame {
 
         try {
             formPanel.add(createStyledLabel("Wand:"));
-            List<Integer> wandIds = ReportingService.getAllWandIds();
+            // Wands reserved at another terminal are not for sale here
+            List<Integer> wandIds = ReportingService.getAvailableWandIds(terminalName);
             JComboBox<Integer> wandCombo = new JComboBox<>(wandIds.toArray(new Integer[0]));
             styleComboBoxInt(wandCombo);
             wandCombo.setPreferredSize(new Dimension(150, 30));
             formPanel.add(wandCombo);
 
-            formPanel.add(createStyledLabel("Customer:"));
-            List<Integer> customerIds = ReportingService.getAllCustomerIds();
-            JComboBox<Integer> customerCombo = new JComboBox<>(customerIds.toArray(new Integer[0]));
-            styleComboBoxInt(customerCombo);
-            customerCombo.setPreferredSize(new Dimension(150, 30));
-            formPanel.add(customerCombo);
+            formPanel.add(createStyledLabel("Customer (name or license):"));
+            AutoCompleteField<Customer> customerField = new AutoCompleteField<>(
+                    prefix -> CustomerLookupIndex.getInstance().suggest(prefix, 10),
+                    c -> c.getFirstName() + " " + c.getLastName() +
+                            (c.getWandLicense() != null && !c.getWandLicense().isEmpty() ? " (" + c.getWandLicense() + ")" : ""));
+            styleTextField(customerField);
+            customerField.setPreferredSize(new Dimension(150, 30));
+            formPanel.add(customerField);
 
             formPanel.add(createStyledLabel("Sale Price (galleons):"));
             JTextField priceField = new JTextField();
@@ -810,17 +1127,25 @@ public class GUI extends JFrame {
             paymentMethodCombo.setPreferredSize(new Dimension(150, 30));
             formPanel.add(paymentMethodCombo);
 
+            // One key per dialog, so a double click or a retry after an error cannot sell twice
+            String idempotencyKey = java.util.UUID.randomUUID().toString();
             JButton saveButton = createMenuButton("Save Purchase", () -> {
                 try {
+                    Customer customer = customerField.getSelectedItem();
+                    if (customer == null) {
+                        showError("Please pick a customer from the suggestions");
+                        return;
+                    }
+
                     int wandId = (Integer) wandCombo.getSelectedItem();
-                    int customerId = (Integer) customerCombo.getSelectedItem();
+                    int customerId = customer.getCustomerId();
                     double salePrice = Double.parseDouble(priceField.getText());
                     String paymentMethod = (String) paymentMethodCombo.getSelectedItem();
 
                     Purchase newPurchase = new Purchase(wandId, customerId, salePrice);
                     newPurchase.setPaymentMethod(paymentMethod);
 
-                    if (ReportingService.createPurchase(newPurchase)) {
+                    if (ReportingService.createPurchase(newPurchase, allocationFor(wandId), idempotencyKey)) {
                         JOptionPane.showMessageDialog(dialog, "Purchase added successfully!");
                         dialog.dispose();
                     }
@@ -853,6 +1178,20 @@ public class GUI extends JFrame {
             try {
                 DatabaseCleaner.resetDatabase(true);
                 DatabaseInitializer.initializeDatabase();
+                StockCache.getInstance().reset();
+                ReportScheduler.getInstance().reset();
+                StockAlertService.getInstance().restart();
+                DemandForecastService.getInstance().invalidate();
+                IdempotencyService.getInstance().clear();
+                WandAllocationIndex.getInstance().invalidate();
+                // Customer ids restart with the sample data, so suggestions must not keep the old ones
+                CustomerLookupIndex.getInstance().reload();
+                LicenseRegistry.getInstance().rebuild();
+                WandService.catalogChanged();
+                SalesStatisticsService.getInstance().invalidate();
+                WandComboTracker.getInstance().invalidate();
+                PriceHistoryService.getInstance().clear();
+                updateStockAlertLabel();
                 JOptionPane.showMessageDialog(this, "Database reset successfully");
             } catch (Exception e) {
                 showError("Reset failed: " + e.getMessage());
@@ -1044,7 +1383,7 @@ public class GUI extends JFrame {
 
         JPanel inventoryPanel = new JPanel(new BorderLayout());
         inventoryPanel.setBackground(BACKGROUND_COLOR);
-        setupInventoryTable(inventoryPanel);
+        setupInventoryTable(inventoryPanel, false);
         tabbedPane.addTab("Current Inventory", inventoryPanel);
 
         JPanel deliveriesPanel = new JPanel(new BorderLayout());
@@ -1052,33 +1391,51 @@ public class GUI extends JFrame {
         setupDeliveriesTable(deliveriesPanel);
         tabbedPane.addTab("Delivery History", deliveriesPanel);
 
+        JPanel suppliersPanel = new JPanel(new BorderLayout());
+        suppliersPanel.setBackground(BACKGROUND_COLOR);
+        setupSuppliersTable(suppliersPanel);
+        tabbedPane.addTab("Suppliers", suppliersPanel);
+
         frame.add(tabbedPane, BorderLayout.CENTER);
 
         JButton newDeliveryButton = createMenuButton("New Delivery", () -> showNewDeliveryDialog(frame));
         newDeliveryButton.setPreferredSize(new Dimension(180, 50));
 
+        JButton importButton = createMenuButton("Import Manifest", () -> importManifest(frame));
+        importButton.setPreferredSize(new Dimension(200, 50));
+
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 20, 10));
         buttonPanel.setBackground(BACKGROUND_COLOR);
+        buttonPanel.add(importButton);
         buttonPanel.add(newDeliveryButton);
 
         frame.add(buttonPanel, BorderLayout.SOUTH);
         frame.setVisible(true);
     }
 
-    private void setupInventoryTable(JPanel parentPanel) {
+    private void setupInventoryTable(JPanel parentPanel, boolean refresh) {
         try {
-            List<InventoryItem> inventory = inventoryService.getFullInventory();
+            ReportScheduler scheduler = ReportScheduler.getInstance();
+            ReportResult<List<InventoryItem>> report = refresh
+                    ? scheduler.refresh(ReportScheduler.INVENTORY)
+                    : scheduler.getLatest(ReportScheduler.INVENTORY);
+            List<InventoryItem> inventory = report.getValue();
 
-            String[] columns = {"ID", "Type", "Material", "Quantity", "Last Updated"};
+            String[] columns = {"ID", "Type", "Material", "Quantity", "Days of Cover", "Reorder", "Last Updated"};
             Object[][] data = new Object[inventory.size()][columns.length];
 
+            DemandForecastService forecasts = DemandForecastService.getInstance();
             for (int i = 0; i < inventory.size(); i++) {
                 InventoryItem item = inventory.get(i);
+                MaterialForecast forecast = forecasts.getForecast(item.getItemType(), item.getMaterialId());
                 data[i] = new Object[]{
                         item.getItemId(),
                         item.getItemType(),
                         item.getMaterialName(),
                         item.getQuantity(),
+                        Double.isInfinite(forecast.getDaysOfCover())
+                                ? "-" : String.format("%.1f", forecast.getDaysOfCover()),
+                        forecast.getSuggestedReorder(),
                         item.getLastUpdated()
                 };
             }
@@ -1090,7 +1447,7 @@ public class GUI extends JFrame {
             parentPanel.add(scrollPane, BorderLayout.CENTER);
 
             JButton refreshButton = createMenuButton("Refresh", () -> {
-                setupInventoryTable(parentPanel);
+                setupInventoryTable(parentPanel, true);
                 parentPanel.revalidate();
                 parentPanel.repaint();
             });
@@ -1098,6 +1455,7 @@ public class GUI extends JFrame {
 
             JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
             buttonPanel.setBackground(BACKGROUND_COLOR);
+            buttonPanel.add(createStyledLabel(formatFreshness(report)));
             buttonPanel.add(refreshButton);
 
             parentPanel.add(buttonPanel, BorderLayout.SOUTH);
@@ -1109,42 +1467,181 @@ public class GUI extends JFrame {
 
     private void setupDeliveriesTable(JPanel parentPanel) {
         try {
-            List<Delivery> deliveries = deliveryService.getDeliveryHistory();
+            ReportResult<List<Delivery>> report = ReportScheduler.getInstance()
+                    .getLatest(ReportScheduler.DELIVERY_HISTORY);
+
+            JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+            filterPanel.setBackground(BACKGROUND_COLOR);
+            JTextField fromField = new JTextField(8);
+            JTextField toField = new JTextField(8);
+            JTextField supplierField = new JTextField(12);
+            styleTextField(fromField);
+            styleTextField(toField);
+            styleTextField(supplierField);
+            filterPanel.add(createStyledLabel("From (yyyy-MM-dd):"));
+            filterPanel.add(fromField);
+            filterPanel.add(createStyledLabel("To:"));
+            filterPanel.add(toField);
+            filterPanel.add(createStyledLabel("Supplier:"));
+            filterPanel.add(supplierField);
+
+            JPanel tablePanel = new JPanel(new BorderLayout());
+            tablePanel.setBackground(BACKGROUND_COLOR);
+            JLabel statusLabel = createStyledLabel(formatFreshness(report));
+            fillDeliveriesTable(tablePanel, report.getValue());
+
+            JButton filterButton = createMenuButton("Filter", () -> {
+                try {
+                    String from = fromField.getText().trim();
+                    String to = toField.getText().trim();
+                    List<Delivery> filtered = deliveryService.getDeliveryHistory(
+                            from.isEmpty() ? null : LocalDate.parse(from).toString(),
+                            to.isEmpty() ? null : LocalDate.parse(to).toString(),
+                            supplierField.getText().trim());
+                    fillDeliveriesTable(tablePanel, filtered);
+                    statusLabel.setText(filtered.size() + " deliveries");
+                } catch (java.time.format.DateTimeParseException e) {
+                    showError("Dates must be in yyyy-MM-dd format");
+                } catch (SQLException e) {
+                    showError("Failed to load deliveries: " + e.getMessage());
+                }
+            });
+            filterButton.setPreferredSize(new Dimension(100, 35));
+            filterPanel.add(filterButton);
+
+            parentPanel.add(filterPanel, BorderLayout.NORTH);
+            parentPanel.add(tablePanel, BorderLayout.CENTER);
+            parentPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        } catch (SQLException e) {
+            showError("Failed to load deliveries: " + e.getMessage());
+        }
+    }
+
+    private void setupSuppliersTable(JPanel parentPanel) {
+        try {
+            List<SupplierStats> suppliers = deliveryService.getAllSupplierStats();
 
-            String[] columns = {"Delivery ID", "Date", "Supplier", "Received By", "Items Count"};
-            Object[][] data = new Object[deliveries.size()][columns.length];
+            String[] columns = {"Supplier", "Deliveries", "Units", "Avg Lead Time (days)", "Last Delivery", "Materials"};
+            Object[][] data = new Object[suppliers.size()][columns.length];
 
-            for (int i = 0; i < deliveries.size(); i++) {
-                Delivery delivery = deliveries.get(i);
+            for (int i = 0; i < suppliers.size(); i++) {
+                SupplierStats stats = suppliers.get(i);
+                StringBuilder materials = new StringBuilder();
+                for (Map.Entry<String, Integer> entry : stats.getUnitsByMaterial().entrySet()) {
+                    if (materials.length() > 0) {
+                        materials.append(", ");
+                    }
+                    materials.append(entry.getKey()).append(" x").append(entry.getValue());
+                }
                 data[i] = new Object[]{
-                        delivery.getDeliveryId(),
-                        delivery.getDeliveryDate(),
-                        delivery.getSupplierName(),
-                        delivery.getReceivedBy(),
-                        delivery.getItems().size()
+                        stats.getSupplierName(),
+                        stats.getDeliveries(),
+                        stats.getTotalUnits(),
+                        stats.getAverageLeadTimeDays() == null
+                                ? "-" : String.format("%.1f", stats.getAverageLeadTimeDays()),
+                        stats.getLastDeliveryDate(),
+                        materials.toString()
                 };
             }
 
             JTable table = createStyledTable(data, columns);
             JScrollPane scrollPane = new JScrollPane(table);
             scrollPane.setBorder(BorderFactory.createEmptyBorder());
+            parentPanel.add(scrollPane, BorderLayout.CENTER);
 
-            // double-click to view details
-            table.addMouseListener(new java.awt.event.MouseAdapter() {
-                @Override
-                public void mouseClicked(java.awt.event.MouseEvent evt) {
-                    if (evt.getClickCount() == 2) {
-                        int row = table.rowAtPoint(evt.getPoint());
-                        int deliveryId = (int) table.getValueAt(row, 0);
-                        showDeliveryDetails(deliveryId);
-                    }
+        } catch (SQLException e) {
+            showError("Failed to load supplier statistics: " + e.getMessage());
+        }
+    }
+
+    private void fillDeliveriesTable(JPanel tablePanel, List<Delivery> deliveries) {
+        String[] columns = {"Delivery ID", "Date", "Supplier", "Received By", "Items Count"};
+        Object[][] data = new Object[deliveries.size()][columns.length];
+
+        for (int i = 0; i < deliveries.size(); i++) {
+            Delivery delivery = deliveries.get(i);
+            data[i] = new Object[]{
+                    delivery.getDeliveryId(),
+                    delivery.getDeliveryDate(),
+                    delivery.getSupplierName(),
+                    delivery.getReceivedBy(),
+                    delivery.getItems().size()
+            };
+        }
+
+        JTable table = createStyledTable(data, columns);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+
+        // double-click to view details
+        table.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                if (evt.getClickCount() == 2) {
+                    int row = table.rowAtPoint(evt.getPoint());
+                    int deliveryId = (int) table.getValueAt(row, 0);
+                    showDeliveryDetails(deliveryId);
                 }
-            });
+            }
+        });
 
-            parentPanel.add(scrollPane, BorderLayout.CENTER);
+        tablePanel.removeAll();
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        tablePanel.revalidate();
+        tablePanel.repaint();
+    }
 
-        } catch (SQLException e) {
-            showError("Failed to load deliveries: " + e.getMessage());
+    // Records a whole delivery from a CSV or JSON manifest (type, material, quantity per line)
+    private void importManifest(JFrame parent) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Delivery manifests (CSV, JSON)", "csv", "json"));
+        if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        JPanel infoPanel = new JPanel(new GridLayout(0, 2, 10, 10));
+        JTextField supplierField = new JTextField();
+        JTextField receivedByField = new JTextField();
+        JTextField orderDateField = new JTextField();
+        infoPanel.add(createStyledLabel("Supplier Name:"));
+        infoPanel.add(supplierField);
+        infoPanel.add(createStyledLabel("Received By:"));
+        infoPanel.add(receivedByField);
+        infoPanel.add(createStyledLabel("Order Date (yyyy-MM-dd, optional):"));
+        infoPanel.add(orderDateField);
+
+        int result = JOptionPane.showConfirmDialog(parent, infoPanel, "Import " + chooser.getSelectedFile().getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        if (supplierField.getText().trim().isEmpty() || receivedByField.getText().trim().isEmpty()) {
+            showError("Please enter the supplier and who received the delivery");
+            return;
+        }
+
+        try {
+            String orderDate = orderDateField.getText().trim();
+            Delivery delivery = manifestImporter.importManifest(chooser.getSelectedFile().toPath(),
+                    supplierField.getText().trim(), receivedByField.getText().trim(),
+                    orderDate.isEmpty() ? null : LocalDate.parse(orderDate).toString(), null);
+
+            int units = delivery.getItems().stream().mapToInt(DeliveryItem::getQuantity).sum();
+            JOptionPane.showMessageDialog(parent, "Imported " + delivery.getItems().size()
+                    + " materials (" + units + " units)");
+            parent.dispose();
+            showDeliveriesInventory();
+        } catch (ManifestImporter.ManifestException e) {
+            JTextArea errorsArea = new JTextArea(String.join("\n", e.getErrors()), 10, 50);
+            errorsArea.setEditable(false);
+            JOptionPane.showMessageDialog(parent, new JScrollPane(errorsArea),
+                    "Manifest not imported", JOptionPane.ERROR_MESSAGE);
+        } catch (java.time.format.DateTimeParseException e) {
+            showError("Order date must be in yyyy-MM-dd format");
+        } catch (java.io.IOException | SQLException e) {
+            showError("Import failed: " + e.getMessage());
         }
     }
 
@@ -1167,6 +1664,11 @@ public class GUI extends JFrame {
         styleTextField(supplierField);
         infoPanel.add(supplierField);
 
+        infoPanel.add(createStyledLabel("Order Date (yyyy-MM-dd, optional):"));
+        JTextField orderDateField = new JTextField();
+        styleTextField(orderDateField);
+        infoPanel.add(orderDateField);
+
         infoPanel.add(createStyledLabel("Received By:"));
         JTextField receivedByField = new JTextField();
         styleTextField(receivedByField);
@@ -1245,6 +1747,7 @@ public class GUI extends JFrame {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
         buttonPanel.setBackground(BACKGROUND_COLOR);
 
+        String idempotencyKey = java.util.UUID.randomUUID().toString();
         JButton saveButton = createMenuButton("Save Delivery", () -> {
             try {
                 if (supplierField.getText().trim().isEmpty()) {
@@ -1262,13 +1765,24 @@ public class GUI extends JFrame {
                     return;
                 }
 
+                String orderDate = orderDateField.getText().trim();
+                if (!orderDate.isEmpty()) {
+                    try {
+                        orderDate = LocalDate.parse(orderDate).toString();
+                    } catch (java.time.format.DateTimeParseException e) {
+                        showError("Order date must be in yyyy-MM-dd format");
+                        return;
+                    }
+                }
+
                 Delivery delivery = new Delivery();
                 delivery.setSupplierName(supplierField.getText());
+                delivery.setOrderDate(orderDate.isEmpty() ? null : orderDate);
                 delivery.setReceivedBy(receivedByField.getText());
                 delivery.setNotes(notesArea.getText());
                 delivery.setItems(deliveryItems);
 
-                if (deliveryService.recordDelivery(delivery)) {
+                if (deliveryService.recordDelivery(delivery, idempotencyKey)) {
                     JOptionPane.showMessageDialog(dialog, "Delivery recorded successfully!");
                     dialog.dispose();
                     parent.dispose();
@@ -1358,13 +1872,9 @@ public class GUI extends JFrame {
 
             for (int i = 0; i < delivery.getItems().size(); i++) {
                 DeliveryItem item = delivery.getItems().get(i);
-                String materialName = item.getItemType().equals("wood") ?
-                        wandService.getWoodName(item.getMaterialId()) :
-                        wandService.getCoreMaterial(item.getMaterialId());
-
                 data[i] = new Object[]{
                         item.getItemType(),
-                        materialName,
+                        item.getMaterialName(),
                         item.getQuantity()
                 };
             }
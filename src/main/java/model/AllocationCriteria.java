@@ -0,0 +1,41 @@
+package model;
+
+// What the customer asked for; a null field matches anything, lengthInches matches the whole inch (11 = 11.0-11.99)
+public class AllocationCriteria {
+    private Integer woodId;
+    private Integer coreId;
+    private Integer lengthInches;
+
+    public AllocationCriteria() {
+    }
+
+    public AllocationCriteria(Integer woodId, Integer coreId, Integer lengthInches) {
+        this.woodId = woodId;
+        this.coreId = coreId;
+        this.lengthInches = lengthInches;
+    }
+
+    public Integer getWoodId() {
+        return woodId;
+    }
+
+    public void setWoodId(Integer woodId) {
+        this.woodId = woodId;
+    }
+
+    public Integer getCoreId() {
+        return coreId;
+    }
+
+    public void setCoreId(Integer coreId) {
+        this.coreId = coreId;
+    }
+
+    public Integer getLengthInches() {
+        return lengthInches;
+    }
+
+    public void setLengthInches(Integer lengthInches) {
+        this.lengthInches = lengthInches;
+    }
+}
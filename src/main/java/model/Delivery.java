@@ -7,6 +7,7 @@ import java.util.List;
 public class Delivery {
     private int deliveryId;
     private String deliveryDate;
+    private String orderDate;
     private String supplierName;
     private String receivedBy;
     private String notes;
@@ -41,6 +42,14 @@ public class Delivery {
         this.deliveryDate = deliveryDate;
     }
 
+    public String getOrderDate() {
+        return orderDate;
+    }
+
+    public void setOrderDate(String orderDate) {
+        this.orderDate = orderDate;
+    }
+
     public String getSupplierName() {
         return supplierName;
     }
@@ -3,6 +3,7 @@ package model;
 public class DeliveryItem {
     private String itemType; // 'wood' or 'core'
     private int materialId;
+    private String materialName;
     private int quantity;
 
     public DeliveryItem(String itemType, int materialId, int quantity) {
@@ -11,6 +12,11 @@ public class DeliveryItem {
         this.quantity = quantity;
     }
 
+    public DeliveryItem(String itemType, int materialId, String materialName, int quantity) {
+        this(itemType, materialId, quantity);
+        this.materialName = materialName;
+    }
+
     public String getItemType() {
         return itemType;
     }
@@ -27,6 +33,14 @@ public class DeliveryItem {
         this.materialId = materialId;
     }
 
+    public String getMaterialName() {
+        return materialName;
+    }
+
+    public void setMaterialName(String materialName) {
+        this.materialName = materialName;
+    }
+
     public int getQuantity() {
         return quantity;
     }
@@ -0,0 +1,40 @@
+package model;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetedSearchResult {
+    private List<Wand> wands;
+    private int totalMatches;
+    private Map<String, Map<String, Integer>> facetCounts;  // facet -> value -> matching wands
+
+    public FacetedSearchResult(List<Wand> wands, int totalMatches, Map<String, Map<String, Integer>> facetCounts) {
+        this.wands = wands;
+        this.totalMatches = totalMatches;
+        this.facetCounts = facetCounts;
+    }
+
+    public List<Wand> getWands() {
+        return wands;
+    }
+
+    public void setWands(List<Wand> wands) {
+        this.wands = wands;
+    }
+
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+
+    public void setTotalMatches(int totalMatches) {
+        this.totalMatches = totalMatches;
+    }
+
+    public Map<String, Map<String, Integer>> getFacetCounts() {
+        return facetCounts;
+    }
+
+    public void setFacetCounts(Map<String, Map<String, Integer>> facetCounts) {
+        this.facetCounts = facetCounts;
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+// Smoothed daily rates for one material; daysOfCover is infinite while nothing is being consumed
+public class MaterialForecast {
+    private String itemType;
+    private int materialId;
+    private int quantity;
+    private double consumptionRate;
+    private double deliveryRate;
+    private double daysOfCover;
+    private int suggestedReorder;
+
+    public MaterialForecast(String itemType, int materialId, int quantity, double consumptionRate,
+                            double deliveryRate, double daysOfCover, int suggestedReorder) {
+        this.itemType = itemType;
+        this.materialId = materialId;
+        this.quantity = quantity;
+        this.consumptionRate = consumptionRate;
+        this.deliveryRate = deliveryRate;
+        this.daysOfCover = daysOfCover;
+        this.suggestedReorder = suggestedReorder;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public void setItemType(String itemType) {
+        this.itemType = itemType;
+    }
+
+    public int getMaterialId() {
+        return materialId;
+    }
+
+    public void setMaterialId(int materialId) {
+        this.materialId = materialId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getConsumptionRate() {
+        return consumptionRate;
+    }
+
+    public void setConsumptionRate(double consumptionRate) {
+        this.consumptionRate = consumptionRate;
+    }
+
+    public double getDeliveryRate() {
+        return deliveryRate;
+    }
+
+    public void setDeliveryRate(double deliveryRate) {
+        this.deliveryRate = deliveryRate;
+    }
+
+    public double getDaysOfCover() {
+        return daysOfCover;
+    }
+
+    public void setDaysOfCover(double daysOfCover) {
+        this.daysOfCover = daysOfCover;
+    }
+
+    public int getSuggestedReorder() {
+        return suggestedReorder;
+    }
+
+    public void setSuggestedReorder(int suggestedReorder) {
+        this.suggestedReorder = suggestedReorder;
+    }
+}
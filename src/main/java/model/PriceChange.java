@@ -0,0 +1,57 @@
+package model;
+
+public class PriceChange {
+    private int wandId;
+    private double oldPrice;
+    private double newPrice;
+    private String changeDate;
+    private String reason;
+
+    public PriceChange(int wandId, double oldPrice, double newPrice, String changeDate, String reason) {
+        this.wandId = wandId;
+        this.oldPrice = oldPrice;
+        this.newPrice = newPrice;
+        this.changeDate = changeDate;
+        this.reason = reason;
+    }
+
+    public int getWandId() {
+        return wandId;
+    }
+
+    public void setWandId(int wandId) {
+        this.wandId = wandId;
+    }
+
+    public double getOldPrice() {
+        return oldPrice;
+    }
+
+    public void setOldPrice(double oldPrice) {
+        this.oldPrice = oldPrice;
+    }
+
+    public double getNewPrice() {
+        return newPrice;
+    }
+
+    public void setNewPrice(double newPrice) {
+        this.newPrice = newPrice;
+    }
+
+    public String getChangeDate() {
+        return changeDate;
+    }
+
+    public void setChangeDate(String changeDate) {
+        this.changeDate = changeDate;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+// One line of a repricing diff
+public class PriceUpdate {
+    private int wandId;
+    private String woodName;
+    private String coreMaterial;
+    private double oldPrice;
+    private double newPrice;
+    private String reason;
+
+    public PriceUpdate(int wandId, String woodName, String coreMaterial,
+                       double oldPrice, double newPrice, String reason) {
+        this.wandId = wandId;
+        this.woodName = woodName;
+        this.coreMaterial = coreMaterial;
+        this.oldPrice = oldPrice;
+        this.newPrice = newPrice;
+        this.reason = reason;
+    }
+
+    public int getWandId() {
+        return wandId;
+    }
+
+    public void setWandId(int wandId) {
+        this.wandId = wandId;
+    }
+
+    public String getWoodName() {
+        return woodName;
+    }
+
+    public void setWoodName(String woodName) {
+        this.woodName = woodName;
+    }
+
+    public String getCoreMaterial() {
+        return coreMaterial;
+    }
+
+    public void setCoreMaterial(String coreMaterial) {
+        this.coreMaterial = coreMaterial;
+    }
+
+    public double getOldPrice() {
+        return oldPrice;
+    }
+
+    public void setOldPrice(double oldPrice) {
+        this.oldPrice = oldPrice;
+    }
+
+    public double getNewPrice() {
+        return newPrice;
+    }
+
+    public void setNewPrice(double newPrice) {
+        this.newPrice = newPrice;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d %s/%s: %.2f -> %.2f (%s)", wandId, woodName, coreMaterial, oldPrice, newPrice, reason);
+    }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// How many wands to build for each target; quantities line up with targets by index
+public class ProductionPlan {
+    private final List<ProductionTarget> targets;
+    private final int[] quantities;
+
+    public ProductionPlan(List<ProductionTarget> targets, int[] quantities) {
+        this.targets = new ArrayList<>(targets);
+        this.quantities = quantities.clone();
+    }
+
+    public List<ProductionTarget> getTargets() {
+        return targets;
+    }
+
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+
+    public int getTotalWands() {
+        int total = 0;
+        for (int quantity : quantities) {
+            total += quantity;
+        }
+        return total;
+    }
+
+    public double getTotalValue() {
+        double total = 0;
+        for (int i = 0; i < quantities.length; i++) {
+            total += quantities[i] * targets.get(i).getPrice();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,69 @@
+package model;
+
+// A wood/core pair we would like to build, at most maxQuantity times, with the attributes new wands get
+public class ProductionTarget {
+    private int woodId;
+    private int coreId;
+    private double length;
+    private String flexibility;
+    private double price;
+    private int maxQuantity;
+
+    public ProductionTarget(int woodId, int coreId, double length, String flexibility,
+                            double price, int maxQuantity) {
+        this.woodId = woodId;
+        this.coreId = coreId;
+        this.length = length;
+        this.flexibility = flexibility;
+        this.price = price;
+        this.maxQuantity = maxQuantity;
+    }
+
+    public int getWoodId() {
+        return woodId;
+    }
+
+    public void setWoodId(int woodId) {
+        this.woodId = woodId;
+    }
+
+    public int getCoreId() {
+        return coreId;
+    }
+
+    public void setCoreId(int coreId) {
+        this.coreId = coreId;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public void setLength(double length) {
+        this.length = length;
+    }
+
+    public String getFlexibility() {
+        return flexibility;
+    }
+
+    public void setFlexibility(String flexibility) {
+        this.flexibility = flexibility;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public int getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    public void setMaxQuantity(int maxQuantity) {
+        this.maxQuantity = maxQuantity;
+    }
+}
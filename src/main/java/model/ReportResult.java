@@ -0,0 +1,28 @@
+package model;
+
+import java.time.LocalDateTime;
+
+// A completed report together with the data version it was computed from
+public class ReportResult<T> {
+    private final T value;
+    private final long dataVersion;
+    private final LocalDateTime computedAt;
+
+    public ReportResult(T value, long dataVersion, LocalDateTime computedAt) {
+        this.value = value;
+        this.dataVersion = dataVersion;
+        this.computedAt = computedAt;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Wands matching the filter (and the wood/core names, when given) get the percent change or the fixed price
+public class RepricingRule {
+    private WandFilter filter = new WandFilter();
+    private Set<String> woodNames = new HashSet<>();
+    private Set<String> coreMaterials = new HashSet<>();
+    private Double percentChange;   // e.g. 10 for +10%, -25 for a clearance
+    private Double fixedPrice;
+    private String reason;
+
+    public RepricingRule() {
+    }
+
+    public RepricingRule(WandFilter filter, Double percentChange, String reason) {
+        this.filter = filter;
+        this.percentChange = percentChange;
+        this.reason = reason;
+    }
+
+    public WandFilter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(WandFilter filter) {
+        this.filter = filter;
+    }
+
+    public Set<String> getWoodNames() {
+        return woodNames;
+    }
+
+    public void setWoodNames(Set<String> woodNames) {
+        this.woodNames = woodNames;
+    }
+
+    public Set<String> getCoreMaterials() {
+        return coreMaterials;
+    }
+
+    public void setCoreMaterials(Set<String> coreMaterials) {
+        this.coreMaterials = coreMaterials;
+    }
+
+    public Double getPercentChange() {
+        return percentChange;
+    }
+
+    public void setPercentChange(Double percentChange) {
+        this.percentChange = percentChange;
+    }
+
+    public Double getFixedPrice() {
+        return fixedPrice;
+    }
+
+    public void setFixedPrice(Double fixedPrice) {
+        this.fixedPrice = fixedPrice;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,36 @@
+package model;
+
+// One wood and one core held for a wand build until expiresAt (epoch millis)
+public class Reservation {
+    private final long reservationId;
+    private final int woodId;
+    private final int coreId;
+    private volatile long expiresAt;
+
+    public Reservation(long reservationId, int woodId, int coreId, long expiresAt) {
+        this.reservationId = reservationId;
+        this.woodId = woodId;
+        this.coreId = coreId;
+        this.expiresAt = expiresAt;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public int getWoodId() {
+        return woodId;
+    }
+
+    public int getCoreId() {
+        return coreId;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,48 @@
+package model;
+
+import java.util.Map;
+
+public class SalesAggregate {
+    private Map<SalesDimension, String> group;
+    private long units;
+    private double revenue;
+
+    public SalesAggregate(Map<SalesDimension, String> group, long units, double revenue) {
+        this.group = group;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public Map<SalesDimension, String> getGroup() {
+        return group;
+    }
+
+    public void setGroup(Map<SalesDimension, String> group) {
+        this.group = group;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public double getAveragePrice() {
+        return units == 0 ? 0 : revenue / units;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d sold, %.2f galleons (avg %.2f)", group, units, revenue, getAveragePrice());
+    }
+}
@@ -0,0 +1,10 @@
+package model;
+
+public enum SalesDimension {
+    WOOD,
+    CORE,
+    HOUSE,
+    SPECIES,
+    MONTH,          // yyyy-MM of the sale date
+    PAYMENT_METHOD
+}
@@ -0,0 +1,95 @@
+package model;
+
+// Approximate figures from the sales sketches; counts of distinct customers are within a few percent
+public class SalesStatistics {
+    private String label;
+    private long sales;
+    private long distinctCustomers;
+    private double minPrice;
+    private double medianPrice;
+    private double p90Price;
+    private double p99Price;
+    private double maxPrice;
+
+    public SalesStatistics(String label, long sales, long distinctCustomers, double minPrice,
+                           double medianPrice, double p90Price, double p99Price, double maxPrice) {
+        this.label = label;
+        this.sales = sales;
+        this.distinctCustomers = distinctCustomers;
+        this.minPrice = minPrice;
+        this.medianPrice = medianPrice;
+        this.p90Price = p90Price;
+        this.p99Price = p99Price;
+        this.maxPrice = maxPrice;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public long getSales() {
+        return sales;
+    }
+
+    public void setSales(long sales) {
+        this.sales = sales;
+    }
+
+    public long getDistinctCustomers() {
+        return distinctCustomers;
+    }
+
+    public void setDistinctCustomers(long distinctCustomers) {
+        this.distinctCustomers = distinctCustomers;
+    }
+
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public void setMedianPrice(double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+
+    public double getP90Price() {
+        return p90Price;
+    }
+
+    public void setP90Price(double p90Price) {
+        this.p90Price = p90Price;
+    }
+
+    public double getP99Price() {
+        return p99Price;
+    }
+
+    public void setP99Price(double p99Price) {
+        this.p99Price = p99Price;
+    }
+
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d sales, ~%d customers, median %.2f, p90 %.2f, p99 %.2f",
+                label, sales, distinctCustomers, medianPrice, p90Price, p99Price);
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import java.time.LocalDateTime;
+
+public class StockAlert {
+    private String itemType;
+    private int materialId;
+    private String materialName;
+    private int quantity;
+    private int threshold;
+    private LocalDateTime raisedAt;
+
+    public StockAlert(String itemType, int materialId, String materialName,
+                      int quantity, int threshold, LocalDateTime raisedAt) {
+        this.itemType = itemType;
+        this.materialId = materialId;
+        this.materialName = materialName;
+        this.quantity = quantity;
+        this.threshold = threshold;
+        this.raisedAt = raisedAt;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public void setItemType(String itemType) {
+        this.itemType = itemType;
+    }
+
+    public int getMaterialId() {
+        return materialId;
+    }
+
+    public void setMaterialId(int materialId) {
+        this.materialId = materialId;
+    }
+
+    public String getMaterialName() {
+        return materialName;
+    }
+
+    public void setMaterialName(String materialName) {
+        this.materialName = materialName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public LocalDateTime getRaisedAt() {
+        return raisedAt;
+    }
+
+    public void setRaisedAt(LocalDateTime raisedAt) {
+        this.raisedAt = raisedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d left (reorder at %d)", materialName, itemType, quantity, threshold);
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Running delivery totals for one supplier; averageLeadTimeDays is null until a delivery had an order date
+public class SupplierStats {
+    private String supplierName;
+    private int deliveries;
+    private int totalUnits;
+    private Double averageLeadTimeDays;
+    private String firstDeliveryDate;
+    private String lastDeliveryDate;
+    private Map<String, Integer> unitsByMaterial = new LinkedHashMap<>();
+
+    public SupplierStats(String supplierName, int deliveries, int totalUnits, Double averageLeadTimeDays,
+                         String firstDeliveryDate, String lastDeliveryDate) {
+        this.supplierName = supplierName;
+        this.deliveries = deliveries;
+        this.totalUnits = totalUnits;
+        this.averageLeadTimeDays = averageLeadTimeDays;
+        this.firstDeliveryDate = firstDeliveryDate;
+        this.lastDeliveryDate = lastDeliveryDate;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+    public void setSupplierName(String supplierName) {
+        this.supplierName = supplierName;
+    }
+
+    public int getDeliveries() {
+        return deliveries;
+    }
+
+    public void setDeliveries(int deliveries) {
+        this.deliveries = deliveries;
+    }
+
+    public int getTotalUnits() {
+        return totalUnits;
+    }
+
+    public void setTotalUnits(int totalUnits) {
+        this.totalUnits = totalUnits;
+    }
+
+    public Double getAverageLeadTimeDays() {
+        return averageLeadTimeDays;
+    }
+
+    public void setAverageLeadTimeDays(Double averageLeadTimeDays) {
+        this.averageLeadTimeDays = averageLeadTimeDays;
+    }
+
+    public String getFirstDeliveryDate() {
+        return firstDeliveryDate;
+    }
+
+    public void setFirstDeliveryDate(String firstDeliveryDate) {
+        this.firstDeliveryDate = firstDeliveryDate;
+    }
+
+    public String getLastDeliveryDate() {
+        return lastDeliveryDate;
+    }
+
+    public void setLastDeliveryDate(String lastDeliveryDate) {
+        this.lastDeliveryDate = lastDeliveryDate;
+    }
+
+    // Keyed by "wood: Oak" style labels
+    public Map<String, Integer> getUnitsByMaterial() {
+        return unitsByMaterial;
+    }
+
+    public void setUnitsByMaterial(Map<String, Integer> unitsByMaterial) {
+        this.unitsByMaterial = unitsByMaterial;
+    }
+}
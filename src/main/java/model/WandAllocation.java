@@ -0,0 +1,32 @@
+package model;
+
+// A wand reserved at the counter for heldBy until expiresAt (epoch millis); the token proves the holder at checkout
+public class WandAllocation {
+    private final int wandId;
+    private final String token;
+    private final String heldBy;
+    private final long expiresAt;
+
+    public WandAllocation(int wandId, String token, String heldBy, long expiresAt) {
+        this.wandId = wandId;
+        this.token = token;
+        this.heldBy = heldBy;
+        this.expiresAt = expiresAt;
+    }
+
+    public int getWandId() {
+        return wandId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getHeldBy() {
+        return heldBy;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,91 @@
+package model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class WandFilter {
+    private Double minLength;
+    private Double maxLength;
+    private Double minPrice;
+    private Double maxPrice;
+    private Set<String> flexibilities = new HashSet<>();
+    private Set<String> conditions = new HashSet<>();
+    private Set<String> statuses = new HashSet<>();
+    private Set<String> woodRarities = new HashSet<>();
+    private Set<Integer> corePowerLevels = new HashSet<>();  // 1-10
+
+    public WandFilter() {
+    }
+
+    public Double getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(Double minLength) {
+        this.minLength = minLength;
+    }
+
+    public Double getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(Double maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Set<String> getFlexibilities() {
+        return flexibilities;
+    }
+
+    public void setFlexibilities(Set<String> flexibilities) {
+        this.flexibilities = flexibilities;
+    }
+
+    public Set<String> getConditions() {
+        return conditions;
+    }
+
+    public void setConditions(Set<String> conditions) {
+        this.conditions = conditions;
+    }
+
+    public Set<String> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Set<String> statuses) {
+        this.statuses = statuses;
+    }
+
+    public Set<String> getWoodRarities() {
+        return woodRarities;
+    }
+
+    public void setWoodRarities(Set<String> woodRarities) {
+        this.woodRarities = woodRarities;
+    }
+
+    public Set<Integer> getCorePowerLevels() {
+        return corePowerLevels;
+    }
+
+    public void setCorePowerLevels(Set<Integer> corePowerLevels) {
+        this.corePowerLevels = corePowerLevels;
+    }
+}
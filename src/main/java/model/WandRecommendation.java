@@ -0,0 +1,52 @@
+package model;
+
+public class WandRecommendation {
+    private Wand wand;
+    private String woodName;
+    private String coreMaterial;
+    private double score;  // 0-100, higher is a better fit
+
+    public WandRecommendation(Wand wand, String woodName, String coreMaterial, double score) {
+        this.wand = wand;
+        this.woodName = woodName;
+        this.coreMaterial = coreMaterial;
+        this.score = score;
+    }
+
+    public Wand getWand() {
+        return wand;
+    }
+
+    public void setWand(Wand wand) {
+        this.wand = wand;
+    }
+
+    public String getWoodName() {
+        return woodName;
+    }
+
+    public void setWoodName(String woodName) {
+        this.woodName = woodName;
+    }
+
+    public String getCoreMaterial() {
+        return coreMaterial;
+    }
+
+    public void setCoreMaterial(String coreMaterial) {
+        this.coreMaterial = coreMaterial;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s / %s (fit %.0f)", wand.toString(), woodName, coreMaterial, score);
+    }
+}
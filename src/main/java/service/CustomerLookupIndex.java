@@ -0,0 +1,127 @@
+package service;
+
+import db.DatabaseConnection;
+import model.Customer;
+import util.PrefixTrie;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory autocomplete over customer names ("first last" and "last first")
+ * and wand licenses. Loaded on first use and kept current by CustomerService.
+ */
+public class CustomerLookupIndex {
+    private static final CustomerLookupIndex INSTANCE = new CustomerLookupIndex();
+
+    private final PrefixTrie<Customer> names = new PrefixTrie<>();
+    private final PrefixTrie<Customer> licenses = new PrefixTrie<>();
+    private final Map<Integer, Customer> customersById = new HashMap<>();
+    private volatile boolean loaded;
+
+    private CustomerLookupIndex() {}
+
+    public static CustomerLookupIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public List<Customer> suggest(String prefix, int limit) throws SQLException {
+        ensureLoaded();
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Customer> matches = new LinkedHashMap<>();
+        for (Customer customer : names.find(prefix, limit)) {
+            matches.putIfAbsent(customer.getCustomerId(), customer);
+        }
+        if (matches.size() < limit) {
+            for (Customer customer : licenses.find(prefix, limit)) {
+                if (matches.size() >= limit) {
+                    break;
+                }
+                matches.putIfAbsent(customer.getCustomerId(), customer);
+            }
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    public synchronized void customerSaved(Customer customer) {
+        if (!loaded) {
+            return;
+        }
+        removeEntries(customer.getCustomerId());
+        addEntries(customer);
+    }
+
+    public synchronized void customerDeleted(int customerId) {
+        if (!loaded) {
+            return;
+        }
+        removeEntries(customerId);
+    }
+
+    public synchronized void reload() throws SQLException {
+        names.clear();
+        licenses.clear();
+        customersById.clear();
+
+        String sql = "SELECT * FROM customers";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                Customer customer = new Customer(
+                        rs.getString("first_name"),
+                        rs.getString("last_name"),
+                        rs.getString("birth_date"),
+                        rs.getString("blood_status"),
+                        rs.getString("house"),
+                        rs.getString("species"),
+                        rs.getString("wand_license"),
+                        rs.getString("notes")
+                );
+                customer.setCustomerId(rs.getInt("customer_id"));
+                customer.setRegistrationDate(rs.getString("registration_date"));
+                addEntries(customer);
+            }
+        }
+        loaded = true;
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    private void addEntries(Customer customer) {
+        customersById.put(customer.getCustomerId(), customer);
+        names.put(customer.getFirstName() + " " + customer.getLastName(), customer);
+        names.put(customer.getLastName() + " " + customer.getFirstName(), customer);
+        if (customer.getWandLicense() != null && !customer.getWandLicense().trim().isEmpty()) {
+            licenses.put(customer.getWandLicense(), customer);
+        }
+    }
+
+    private void removeEntries(int customerId) {
+        Customer previous = customersById.remove(customerId);
+        if (previous == null) {
+            return;
+        }
+        names.remove(previous.getFirstName() + " " + previous.getLastName(), previous);
+        names.remove(previous.getLastName() + " " + previous.getFirstName(), previous);
+        if (previous.getWandLicense() != null) {
+            licenses.remove(previous.getWandLicense(), previous);
+        }
+    }
+}
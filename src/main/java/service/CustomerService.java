@@ -2,17 +2,21 @@ package service;
 
 import db.DatabaseConnection;
 import model.Customer;
+import util.FtsQuery;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class CustomerService {
 
+    public static final int DEFAULT_SEARCH_LIMIT = 200;
+
     public boolean createCustomer(Customer customer) throws SQLException {
         String sql = "INSERT INTO customers (first_name, last_name, birth_date, blood_status, " +
                 "house, species, wand_license, notes, registration_date) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
 
+        long licenseGeneration = LicenseRegistry.getInstance().currentGeneration();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
@@ -31,6 +35,8 @@ public class CustomerService {
                 try (ResultSet rs = stmt.getGeneratedKeys()) {
                     if (rs.next()) {
                         customer.setCustomerId(rs.getInt(1));
+                        CustomerLookupIndex.getInstance().customerSaved(customer);
+                        LicenseRegistry.getInstance().licenseChanged(licenseGeneration, null, customer.getWandLicense());
                         return true;
                     }
                 }
@@ -40,25 +46,78 @@ public class CustomerService {
     }
 
     public List<Customer> findCustomersByName(String name) throws SQLException {
+        String match = FtsQuery.prefixMatch(name, "first_name", "last_name");
+        if (match == null) {
+            return getAllCustomers();
+        }
+        List<Customer> customers = searchCustomersFts(match, DEFAULT_SEARCH_LIMIT);
+        if (customers.isEmpty()) {
+            // Tokens only match from their start, so "ott" still needs a substring scan to find "Potter"
+            customers = findCustomersByNameSubstring(name.trim());
+        }
+        return customers;
+    }
+
+    private List<Customer> findCustomersByNameSubstring(String name) throws SQLException {
         List<Customer> customers = new ArrayList<>();
-        String sql = "SELECT * FROM customers WHERE first_name LIKE ? OR last_name LIKE ? ORDER BY last_name, first_name";
+        String sql = "SELECT * FROM customers WHERE first_name LIKE ? OR last_name LIKE ? " +
+                "ORDER BY last_name, first_name LIMIT ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, "%" + name + "%");
             stmt.setString(2, "%" + name + "%");
+            stmt.setInt(3, DEFAULT_SEARCH_LIMIT);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customers.add(extractCustomerFromResultSet(rs));
+                }
+            }
+        }
+        return customers;
+    }
+
+    // Matches names, wand licenses and notes, best matches first
+    public List<Customer> searchCustomers(String text, int limit) throws SQLException {
+        String match = FtsQuery.prefixMatch(text);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        return searchCustomersFts(match, limit);
+    }
+
+    private List<Customer> searchCustomersFts(String match, int limit) throws SQLException {
+        List<Customer> customers = new ArrayList<>();
+        String sql = "SELECT c.* FROM customers_fts f " +
+                "JOIN customers c ON c.customer_id = f.rowid " +
+                "WHERE customers_fts MATCH ? " +
+                "ORDER BY bm25(customers_fts, 10.0, 10.0, 5.0, 1.0), c.last_name, c.first_name " +
+                "LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, match);
+            stmt.setInt(2, limit);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Customer customer = extractCustomerFromResultSet(rs);
-                    customers.add(customer);
+                    customers.add(extractCustomerFromResultSet(rs));
                 }
             }
         }
         return customers;
     }
 
+    public void rebuildSearchIndex() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO customers_fts (customers_fts) VALUES ('rebuild')");
+        }
+    }
+
     public Customer getCustomerById(int customerId) throws SQLException {
         String sql = "SELECT * FROM customers WHERE customer_id = ?";
 
@@ -83,6 +142,9 @@ public class CustomerService {
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
+            long licenseGeneration = LicenseRegistry.getInstance().currentGeneration();
+            String oldLicense = findWandLicense(conn, customer.getCustomerId());
+
             stmt.setString(1, customer.getFirstName());
             stmt.setString(2, customer.getLastName());
             stmt.setString(3, customer.getBirthDate());
@@ -94,7 +156,13 @@ public class CustomerService {
             stmt.setDate(9, new java.sql.Date(System.currentTimeMillis()));
             stmt.setInt(10, customer.getCustomerId());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                CustomerLookupIndex.getInstance().customerSaved(customer);
+                LicenseRegistry.getInstance().licenseChanged(licenseGeneration, oldLicense, customer.getWandLicense());
+                SalesAnalyticsService.getInstance().invalidate();
+                return true;
+            }
+            return false;
         }
     }
 
@@ -104,8 +172,17 @@ public class CustomerService {
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
+            long licenseGeneration = LicenseRegistry.getInstance().currentGeneration();
+            String oldLicense = findWandLicense(conn, customerId);
+
             stmt.setInt(1, customerId);
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                CustomerLookupIndex.getInstance().customerDeleted(customerId);
+                LicenseRegistry.getInstance().licenseChanged(licenseGeneration, oldLicense, null);
+                SalesAnalyticsService.getInstance().invalidate();
+                return true;
+            }
+            return false;
         }
     }
 
@@ -145,6 +222,10 @@ public class CustomerService {
             return true; // No license is valid (for squibs/muggles)
         }
 
+        if (!LicenseRegistry.getInstance().mightBeInUse(license)) {
+            return true;
+        }
+
         String sql = "SELECT COUNT(*) FROM customers WHERE wand_license = ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
@@ -159,4 +240,15 @@ public class CustomerService {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private String findWandLicense(Connection conn, int customerId) throws SQLException {
+        String sql = "SELECT wand_license FROM customers WHERE customer_id = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, customerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("wand_license") : null;
+            }
+        }
+    }
+}
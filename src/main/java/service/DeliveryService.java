@@ -3,29 +3,69 @@ package service;
 import db.DatabaseConnection;
 import model.Delivery;
 import model.DeliveryItem;
+import model.SupplierStats;
 import model.Wand;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class DeliveryService {
+    private static final String DELIVERY_SELECT = "SELECT d.*, di.item_type, di.material_id, di.quantity, " +
+            "CASE WHEN di.item_type = 'wood' THEN w.name ELSE c.material END AS material_name " +
+            "FROM inventory_deliveries d " +
+            "LEFT JOIN delivery_items di ON d.delivery_id = di.delivery_id " +
+            "LEFT JOIN wood_types w ON di.item_type = 'wood' AND di.material_id = w.wood_id " +
+            "LEFT JOIN cores c ON di.item_type = 'core' AND di.material_id = c.core_id ";
+
+    private final InventoryService inventoryService = new InventoryService();
 
     public boolean recordDelivery(Delivery delivery) throws SQLException {
-        String deliverySql = "INSERT INTO inventory_deliveries (supplier_name, received_by, notes) VALUES (?, ?, ?)";
+        return recordDelivery(delivery, null);
+    }
+
+    // A retry with the same idempotency key only fills in the delivery id recorded the first time
+    public boolean recordDelivery(Delivery delivery, String idempotencyKey) throws SQLException {
+        IdempotencyService idempotency = IdempotencyService.getInstance();
+        String fingerprint = idempotencyKey != null ? deliveryFingerprint(delivery) : null;
+        if (idempotencyKey != null) {
+            Integer previous = idempotency.cached(IdempotencyService.DELIVERY, idempotencyKey, fingerprint);
+            if (previous != null) {
+                delivery.setDeliveryId(previous);
+                return true;
+            }
+        }
+
+        // supplier_stats and supplier_material_stats are updated by triggers within this transaction
+        String deliverySql = "INSERT INTO inventory_deliveries (supplier_name, received_by, notes, order_date) " +
+                "VALUES (?, ?, ?, ?)";
         String itemSql = "INSERT INTO delivery_items (delivery_id, item_type, material_id, quantity) VALUES (?, ?, ?, ?)";
 
         try (Connection conn = DatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
 
             try {
+                // Claiming the key is the first write, so concurrent retries queue behind this transaction
+                if (idempotencyKey != null) {
+                    Integer previous = idempotency.claim(conn, IdempotencyService.DELIVERY, idempotencyKey,
+                            fingerprint);
+                    if (previous != null) {
+                        conn.rollback();
+                        idempotency.remember(IdempotencyService.DELIVERY, idempotencyKey, previous, fingerprint);
+                        delivery.setDeliveryId(previous);
+                        return true;
+                    }
+                }
+
                 int deliveryId;
                 try (PreparedStatement pstmt = conn.prepareStatement(deliverySql, Statement.RETURN_GENERATED_KEYS)) {
                     pstmt.setString(1, delivery.getSupplierName());
                     pstmt.setString(2, delivery.getReceivedBy());
                     pstmt.setString(3, delivery.getNotes());
+                    pstmt.setString(4, delivery.getOrderDate());
                     pstmt.executeUpdate();
 
                     ResultSet rs = pstmt.getGeneratedKeys();
@@ -43,12 +83,26 @@ public class DeliveryService {
                         pstmt.setInt(4, item.getQuantity());
                         pstmt.addBatch();
 
-                        updateStock(item.getItemType(), item.getMaterialId(), item.getQuantity(), conn);
+                        inventoryService.updateStock(item.getItemType(), item.getMaterialId(), item.getQuantity(),
+                                "delivery", deliveryId, conn);
                     }
                     pstmt.executeBatch();
                 }
 
+                if (idempotencyKey != null) {
+                    idempotency.complete(conn, IdempotencyService.DELIVERY, idempotencyKey, deliveryId);
+                }
+
+                long version = StockCache.inventoryVersion(conn);
                 conn.commit();
+                delivery.setDeliveryId(deliveryId);
+                for (DeliveryItem item : delivery.getItems()) {
+                    StockCache.getInstance().applyCommitted(item.getItemType(), item.getMaterialId(),
+                            item.getQuantity(), version);
+                }
+                if (idempotencyKey != null) {
+                    idempotency.remember(IdempotencyService.DELIVERY, idempotencyKey, deliveryId, fingerprint);
+                }
                 return true;
             } catch (SQLException e) {
                 conn.rollback();
@@ -57,130 +111,144 @@ public class DeliveryService {
         }
     }
 
-    private void updateStock(String itemType, int materialId, int quantity, Connection conn) throws SQLException {
-        String updateSql = "UPDATE component_inventory SET quantity = quantity + ? " +
-                "WHERE item_type = ? AND material_id = ?";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
-            pstmt.setInt(1, quantity);
-            pstmt.setString(2, itemType);
-            pstmt.setInt(3, materialId);
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows == 0) {
-                // Item doesn't exist, insert new record
-                String insertSql = "INSERT INTO component_inventory (item_type, material_id, quantity) " +
-                        "VALUES (?, ?, ?)";
-                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                    insertStmt.setString(1, itemType);
-                    insertStmt.setInt(2, materialId);
-                    insertStmt.setInt(3, quantity);
-                    insertStmt.executeUpdate();
-                }
-            }
+    // Supplier plus the delivered lines, sorted so their order does not matter
+    private static String deliveryFingerprint(Delivery delivery) {
+        List<String> parts = new ArrayList<>();
+        for (DeliveryItem item : delivery.getItems()) {
+            parts.add(item.getItemType() + ":" + item.getMaterialId() + "=" + item.getQuantity());
         }
+        Collections.sort(parts);
+        parts.add(0, delivery.getSupplierName());
+        return IdempotencyService.fingerprint(parts.toArray(new String[0]));
     }
 
     public List<Delivery> getDeliveryHistory() throws SQLException {
-        List<Delivery> deliveries = new ArrayList<>();
-        String sql = "SELECT d.*, di.item_type, di.material_id, di.quantity, " +
-                "CASE WHEN di.item_type = 'wood' THEN w.name ELSE c.material END AS material_name " +
-                "FROM inventory_deliveries d " +
-                "LEFT JOIN delivery_items di ON d.delivery_id = di.delivery_id " +
-                "LEFT JOIN wood_types w ON di.item_type = 'wood' AND di.material_id = w.wood_id " +
-                "LEFT JOIN cores c ON di.item_type = 'core' AND di.material_id = c.core_id " +
-                "ORDER BY d.delivery_date DESC, d.delivery_id";
+        return getDeliveryHistory(null, null, null);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            Map<Integer, Delivery> deliveryMap = new HashMap<>();
-
-            while (rs.next()) {
-                try {
-                    int deliveryId = rs.getInt("delivery_id");
-                    Delivery delivery = deliveryMap.computeIfAbsent(deliveryId, id -> {
-                        try {
-                            Delivery d = new Delivery();
-                            d.setDeliveryId(id);
-                            d.setDeliveryDate(rs.getString("delivery_date"));
-                            d.setSupplierName(rs.getString("supplier_name"));
-                            d.setReceivedBy(rs.getString("received_by"));
-                            d.setNotes(rs.getString("notes"));
-                            d.setItems(new ArrayList<>());
-                            return d;
-                        } catch (SQLException e) {
-                            throw new RuntimeException("Error creating delivery", e);
-                        }
-                    });
+    // Newest first; dates are "yyyy-MM-dd" and inclusive, and any filter may be null
+    public List<Delivery> getDeliveryHistory(String fromDate, String toDate, String supplierName) throws SQLException {
+        StringBuilder sql = new StringBuilder(DELIVERY_SELECT).append("WHERE 1 = 1 ");
+        List<String> params = new ArrayList<>();
+        if (fromDate != null) {
+            sql.append("AND d.delivery_date >= ? ");
+            params.add(fromDate);
+        }
+        if (toDate != null) {
+            sql.append("AND d.delivery_date < date(?, '+1 day') ");
+            params.add(toDate);
+        }
+        if (supplierName != null && !supplierName.isEmpty()) {
+            sql.append("AND d.supplier_name = ? COLLATE NOCASE ");
+            params.add(supplierName);
+        }
+        sql.append("ORDER BY d.delivery_date DESC, d.delivery_id DESC, di.item_id");
 
-                    if (rs.getString("item_type") != null) {
-                        delivery.getItems().add(new DeliveryItem(
-                                rs.getString("item_type"),
-                                rs.getInt("material_id"),
-                                rs.getInt("quantity")
-                        ));
-                    }
-                } catch (SQLException e) {
-                    throw new SQLException("Error processing delivery row", e);
-                }
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setString(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return readDeliveries(rs);
             }
-            deliveries.addAll(deliveryMap.values());
         }
-        return deliveries;
     }
 
-    private List<DeliveryItem> getDeliveryItems(int deliveryId) throws SQLException {
-        String sql = "SELECT di.*, " +
-                "CASE WHEN di.item_type = 'wood' THEN w.name ELSE c.material END AS material_name " +
-                "FROM delivery_items di " +
-                "LEFT JOIN wood_types w ON di.item_type = 'wood' AND di.material_id = w.wood_id " +
-                "LEFT JOIN cores c ON di.item_type = 'core' AND di.material_id = c.core_id " +
-                "WHERE di.delivery_id = ?";
-
-        List<DeliveryItem> items = new ArrayList<>();
+    // Header, lines and material names in a single query
+    public Delivery getDeliveryById(int deliveryId) throws SQLException {
+        String sql = DELIVERY_SELECT + "WHERE d.delivery_id = ? ORDER BY di.item_id";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, deliveryId);
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    items.add(new DeliveryItem(
-                            rs.getString("item_type"),
-                            rs.getInt("material_id"),
-                            rs.getInt("quantity")
-                    ));
-                }
+                List<Delivery> deliveries = readDeliveries(rs);
+                return deliveries.isEmpty() ? null : deliveries.get(0);
             }
         }
-        return items;
     }
 
-    public Delivery getDeliveryById(int deliveryId) throws SQLException {
-        String sql = "SELECT d.* FROM inventory_deliveries d WHERE d.delivery_id = ?";
+    // Point lookup on supplier_stats; null for a supplier that never delivered
+    public SupplierStats getSupplierStats(String supplierName) throws SQLException {
+        List<SupplierStats> stats = querySupplierStats("WHERE s.supplier_name = ? ", supplierName);
+        return stats.isEmpty() ? null : stats.get(0);
+    }
 
+    // Every supplier, most deliveries first
+    public List<SupplierStats> getAllSupplierStats() throws SQLException {
+        return querySupplierStats("", null);
+    }
+
+    private List<SupplierStats> querySupplierStats(String where, String supplierName) throws SQLException {
+        String sql = "SELECT s.*, m.item_type, m.units, " +
+                "CASE WHEN m.item_type = 'wood' THEN w.name ELSE c.material END AS material_name " +
+                "FROM supplier_stats s " +
+                "LEFT JOIN supplier_material_stats m ON m.supplier_name = s.supplier_name " +
+                "LEFT JOIN wood_types w ON m.item_type = 'wood' AND m.material_id = w.wood_id " +
+                "LEFT JOIN cores c ON m.item_type = 'core' AND m.material_id = c.core_id " +
+                where +
+                "ORDER BY s.deliveries DESC, s.supplier_name, m.units DESC";
+
+        Map<String, SupplierStats> statsMap = new LinkedHashMap<>();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, deliveryId);
+            if (supplierName != null) {
+                pstmt.setString(1, supplierName);
+            }
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Delivery delivery = new Delivery();
-                    delivery.setDeliveryId(rs.getInt("delivery_id"));
-                    delivery.setDeliveryDate(rs.getString("delivery_date"));
-                    delivery.setSupplierName(rs.getString("supplier_name"));
-                    delivery.setReceivedBy(rs.getString("received_by"));
-                    delivery.setNotes(rs.getString("notes"));
-                    delivery.setItems(getDeliveryItems(deliveryId));
-                    return delivery;
+                while (rs.next()) {
+                    String name = rs.getString("supplier_name");
+                    SupplierStats stats = statsMap.get(name);
+                    if (stats == null) {
+                        int samples = rs.getInt("lead_time_samples");
+                        stats = new SupplierStats(name,
+                                rs.getInt("deliveries"),
+                                rs.getInt("total_units"),
+                                samples > 0 ? rs.getDouble("lead_time_days_total") / samples : null,
+                                rs.getString("first_delivery_date"),
+                                rs.getString("last_delivery_date"));
+                        statsMap.put(name, stats);
+                    }
+                    if (rs.getString("item_type") != null) {
+                        stats.getUnitsByMaterial().merge(
+                                rs.getString("item_type") + ": " + rs.getString("material_name"),
+                                rs.getInt("units"), Integer::sum);
+                    }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("SQL Exception: " + e.getMessage());
-            throw e;
         }
-        return null;
+        return new ArrayList<>(statsMap.values());
+    }
+
+    // One row per delivery line, or a single row with null line columns for a delivery without lines
+    private List<Delivery> readDeliveries(ResultSet rs) throws SQLException {
+        Map<Integer, Delivery> deliveryMap = new LinkedHashMap<>();
+        while (rs.next()) {
+            int deliveryId = rs.getInt("delivery_id");
+            Delivery delivery = deliveryMap.get(deliveryId);
+            if (delivery == null) {
+                delivery = new Delivery();
+                delivery.setDeliveryId(deliveryId);
+                delivery.setDeliveryDate(rs.getString("delivery_date"));
+                delivery.setOrderDate(rs.getString("order_date"));
+                delivery.setSupplierName(rs.getString("supplier_name"));
+                delivery.setReceivedBy(rs.getString("received_by"));
+                delivery.setNotes(rs.getString("notes"));
+                delivery.setItems(new ArrayList<>());
+                deliveryMap.put(deliveryId, delivery);
+            }
+
+            if (rs.getString("item_type") != null) {
+                delivery.getItems().add(new DeliveryItem(
+                        rs.getString("item_type"),
+                        rs.getInt("material_id"),
+                        rs.getString("material_name"),
+                        rs.getInt("quantity")
+                ));
+            }
+        }
+        return new ArrayList<>(deliveryMap.values());
     }
 }
@@ -0,0 +1,238 @@
+package service;
+
+import db.DatabaseConnection;
+import model.MaterialForecast;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Days of cover and reorder suggestions per material. Each material has one
+ * row of exponentially smoothed daily consumption and delivery rates in
+ * material_demand_stats. InventoryService updates the row in the same
+ * transaction as the stock change, so forecasts never scan wands or
+ * delivery_items. The history is read only once per material, to seed a row
+ * that does not exist yet.
+ */
+public class DemandForecastService {
+    // Weight of the latest day; 0.2 is roughly a two-week memory
+    public static final double ALPHA = 0.2;
+    public static final int LEAD_TIME_DAYS = 7;
+    public static final int REVIEW_PERIOD_DAYS = 14;
+
+    private static final DemandForecastService INSTANCE = new DemandForecastService();
+
+    private final Map<String, DemandState> states = new ConcurrentHashMap<>();
+    // Per-material eviction count, only changed inside states.compute for that material
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Bumped by invalidate() before it clears
+    private volatile long generation;
+
+    private DemandForecastService() {
+        // Committed stock changes mean the stored row moved on
+        StockCache.getInstance().addListener((itemType, materialId, quantity) -> evict(key(itemType, materialId)));
+    }
+
+    public static DemandForecastService getInstance() {
+        return INSTANCE;
+    }
+
+    // Called by InventoryService for production and delivery movements, inside the caller's transaction
+    void record(Connection conn, String itemType, int materialId, String reason, int quantity) throws SQLException {
+        LocalDate today = today();
+        DemandState state = readState(conn, itemType, materialId);
+        if (state == null) {
+            state = fromHistory(conn, itemType, materialId, today);
+        }
+        state = state.rollTo(today);
+        if ("production".equals(reason)) {
+            state = new DemandState(state.day, state.consumed + quantity, state.delivered,
+                    state.consumptionRate, state.deliveryRate);
+        } else {
+            state = new DemandState(state.day, state.consumed, state.delivered + quantity,
+                    state.consumptionRate, state.deliveryRate);
+        }
+
+        String sql = "INSERT OR REPLACE INTO material_demand_stats " +
+                "(item_type, material_id, stats_date, consumed, delivered, consumption_rate, delivery_rate) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, itemType);
+            stmt.setInt(2, materialId);
+            stmt.setString(3, state.day.toString());
+            stmt.setInt(4, state.consumed);
+            stmt.setInt(5, state.delivered);
+            stmt.setDouble(6, state.consumptionRate);
+            stmt.setDouble(7, state.deliveryRate);
+            stmt.executeUpdate();
+        }
+    }
+
+    public MaterialForecast getForecast(String itemType, int materialId) throws SQLException {
+        String key = key(itemType, materialId);
+        DemandState state = states.get(key);
+        if (state == null) {
+            long startedGeneration = generation;
+            long startedVersion = versions.getOrDefault(key, 0L);
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                state = readState(conn, itemType, materialId);
+                if (state == null) {
+                    state = fromHistory(conn, itemType, materialId, today());
+                }
+            }
+            publish(key, startedGeneration, startedVersion, state);
+        }
+
+        // Rates cover complete days only, so today's partial totals do not skew them
+        DemandState current = state.rollTo(today());
+        int quantity = StockCache.getInstance().getQuantity(itemType, materialId);
+        double consumption = current.consumptionRate;
+        double daysOfCover = consumption > 0 ? quantity / consumption : Double.POSITIVE_INFINITY;
+
+        // Enough for the lead time and one review period, plus the alert threshold as safety stock
+        int target = (int) Math.ceil(consumption * (LEAD_TIME_DAYS + REVIEW_PERIOD_DAYS))
+                + StockAlertService.getInstance().getThreshold(itemType, materialId);
+        return new MaterialForecast(itemType, materialId, quantity, consumption, current.deliveryRate,
+                daysOfCover, Math.max(0, target - quantity));
+    }
+
+    // Loads every stored row in one query, e.g. before the inventory view is first shown
+    public void preload() throws SQLException {
+        long startedGeneration = generation;
+        Map<String, Long> startedVersions = new HashMap<>(versions);
+        Map<String, DemandState> loaded = new HashMap<>();
+        String sql = "SELECT * FROM material_demand_stats";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                loaded.put(key(rs.getString("item_type"), rs.getInt("material_id")), toState(rs));
+            }
+        }
+        for (Map.Entry<String, DemandState> entry : loaded.entrySet()) {
+            publish(entry.getKey(), startedGeneration, startedVersions.getOrDefault(entry.getKey(), 0L),
+                    entry.getValue());
+        }
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        states.clear();
+    }
+
+    private void evict(String key) {
+        states.compute(key, (k, existing) -> {
+            versions.merge(k, 1L, Long::sum);
+            return null;
+        });
+    }
+
+    // A row read before a commit or an invalidation is used by its caller but not cached
+    private void publish(String key, long startedGeneration, long startedVersion, DemandState state) {
+        states.compute(key, (k, existing) ->
+                generation == startedGeneration && versions.getOrDefault(k, 0L) == startedVersion
+                        ? state : existing);
+    }
+
+    private DemandState readState(Connection conn, String itemType, int materialId) throws SQLException {
+        String sql = "SELECT * FROM material_demand_stats WHERE item_type = ? AND material_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, itemType);
+            stmt.setInt(2, materialId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? toState(rs) : null;
+            }
+        }
+    }
+
+    private DemandState toState(ResultSet rs) throws SQLException {
+        return new DemandState(LocalDate.parse(rs.getString("stats_date")), rs.getInt("consumed"),
+                rs.getInt("delivered"), rs.getDouble("consumption_rate"), rs.getDouble("delivery_rate"));
+    }
+
+    // Replays the daily totals before today for a material that has no row yet
+    private DemandState fromHistory(Connection conn, String itemType, int materialId,
+                                    LocalDate today) throws SQLException {
+        String column = "wood".equals(itemType) ? "wood_id" : "core_id";
+        String producedSql = "SELECT date(production_date) AS day, COUNT(*) AS units FROM wands " +
+                "WHERE " + column + " = ? AND date(production_date) < ? GROUP BY day";
+        String deliveredSql = "SELECT date(d.delivery_date) AS day, SUM(di.quantity) AS units " +
+                "FROM delivery_items di " +
+                "JOIN inventory_deliveries d ON di.delivery_id = d.delivery_id " +
+                "WHERE di.item_type = ? AND di.material_id = ? AND date(d.delivery_date) < ? GROUP BY day";
+
+        TreeMap<LocalDate, int[]> days = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(producedSql)) {
+            stmt.setInt(1, materialId);
+            stmt.setString(2, today.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.computeIfAbsent(LocalDate.parse(rs.getString("day")), d -> new int[2])[0] += rs.getInt("units");
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(deliveredSql)) {
+            stmt.setString(1, itemType);
+            stmt.setInt(2, materialId);
+            stmt.setString(3, today.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.computeIfAbsent(LocalDate.parse(rs.getString("day")), d -> new int[2])[1] += rs.getInt("units");
+                }
+            }
+        }
+
+        if (days.isEmpty()) {
+            return new DemandState(today, 0, 0, 0, 0);
+        }
+        DemandState state = new DemandState(days.firstKey(), 0, 0, 0, 0);
+        for (Map.Entry<LocalDate, int[]> day : days.entrySet()) {
+            DemandState rolled = state.rollTo(day.getKey());
+            state = new DemandState(day.getKey(), day.getValue()[0], day.getValue()[1],
+                    rolled.consumptionRate, rolled.deliveryRate);
+        }
+        return state.rollTo(today);
+    }
+
+    // Production and delivery dates are written by SQLite's datetime('now'), which is UTC
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static String key(String itemType, int materialId) {
+        return itemType + ":" + materialId;
+    }
+
+    private static class DemandState {
+        private final LocalDate day;
+        private final int consumed;
+        private final int delivered;
+        private final double consumptionRate;
+        private final double deliveryRate;
+
+        DemandState(LocalDate day, int consumed, int delivered, double consumptionRate, double deliveryRate) {
+            this.day = day;
+            this.consumed = consumed;
+            this.delivered = delivered;
+            this.consumptionRate = consumptionRate;
+            this.deliveryRate = deliveryRate;
+        }
+
+        // Folds the open day into the rates and decays them over the empty days up to the given one
+        DemandState rollTo(LocalDate target) {
+            if (!day.isBefore(target)) {
+                return this;
+            }
+            double decay = Math.pow(1 - ALPHA, ChronoUnit.DAYS.between(day, target) - 1);
+            double consumption = (ALPHA * consumed + (1 - ALPHA) * consumptionRate) * decay;
+            double delivery = (ALPHA * delivered + (1 - ALPHA) * deliveryRate) * decay;
+            return new DemandState(target, 0, 0, consumption, delivery);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package service;
+
+import db.DatabaseConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Makes retried purchases and deliveries safe. The caller's key is claimed in
+ * idempotency_keys as the first write of the operation's own transaction, so
+ * two attempts with the same key serialize on the database write lock. The
+ * second one finds the key taken and gets the first one's result id instead
+ * of writing again. Keys that recently completed are also kept in a bounded
+ * LRU map, so most retries are answered without opening a connection. Each
+ * key carries a fingerprint of the request, so a key reused for a different
+ * request is refused instead of answered with an unrelated result.
+ */
+public class IdempotencyService {
+    public static final String PURCHASE = "purchase";
+    public static final String DELIVERY = "delivery";
+
+    private static final IdempotencyService INSTANCE = new IdempotencyService();
+    // Keys only need to outlive any plausible retry
+    public static final int RETENTION_DAYS = 30;
+    private static final int CACHE_SIZE = 10_000;
+
+    private final Map<String, Completed> recent = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private IdempotencyService() {}
+
+    public static IdempotencyService getInstance() {
+        return INSTANCE;
+    }
+
+    // Hex SHA-256 of the parts that make up a request, for claim() to compare retries against
+    public static String fingerprint(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Result id of an operation that already completed with this key, from memory only
+    public synchronized Integer cached(String operation, String key, String fingerprint) throws SQLException {
+        Completed completed = recent.get(operation + ":" + key);
+        if (completed == null) {
+            return null;
+        }
+        checkFingerprint(operation, key, completed.fingerprint, fingerprint);
+        return completed.resultId;
+    }
+
+    /**
+     * Claims the key inside the caller's transaction. Returns null when the key
+     * is new and the caller should go ahead, or the result id the key is
+     * already bound to. Throws if the key was used for a different request.
+     */
+    Integer claim(Connection conn, String operation, String key, String fingerprint) throws SQLException {
+        String insertSql = "INSERT OR IGNORE INTO idempotency_keys (operation, idempotency_key, fingerprint) " +
+                "VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+            stmt.setString(1, operation);
+            stmt.setString(2, key);
+            stmt.setString(3, fingerprint);
+            if (stmt.executeUpdate() > 0) {
+                return null;
+            }
+        }
+
+        String selectSql = "SELECT result_id, fingerprint FROM idempotency_keys " +
+                "WHERE operation = ? AND idempotency_key = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+            stmt.setString(1, operation);
+            stmt.setString(2, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Idempotency key " + key + " is held by an unfinished " + operation);
+                }
+                checkFingerprint(operation, key, rs.getString("fingerprint"), fingerprint);
+                if (rs.getObject("result_id") == null) {
+                    throw new SQLException("Idempotency key " + key + " is held by an unfinished " + operation);
+                }
+                return rs.getInt("result_id");
+            }
+        }
+    }
+
+    // Keys claimed before fingerprints were stored have none and are taken at their word
+    private static void checkFingerprint(String operation, String key, String stored, String fingerprint)
+            throws SQLException {
+        if (stored != null && !stored.equals(fingerprint)) {
+            throw new SQLException("Idempotency key " + key + " was already used for a different " + operation);
+        }
+    }
+
+    // Binds a claimed key to the id the operation produced, still inside its transaction
+    void complete(Connection conn, String operation, String key, int resultId) throws SQLException {
+        String sql = "UPDATE idempotency_keys SET result_id = ? WHERE operation = ? AND idempotency_key = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, resultId);
+            stmt.setString(2, operation);
+            stmt.setString(3, key);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Called once the transaction that claimed or found the key has ended
+    synchronized void remember(String operation, String key, int resultId, String fingerprint) {
+        recent.put(operation + ":" + key, new Completed(resultId, fingerprint));
+    }
+
+    // Returns the number purged; the in-memory map is bounded on its own
+    public int purgeOlderThan(int days) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < datetime('now', ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, "-" + days + " days");
+            return stmt.executeUpdate();
+        }
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+    }
+
+    private static class Completed {
+        private final int resultId;
+        private final String fingerprint;
+
+        Completed(int resultId, String fingerprint) {
+            this.resultId = resultId;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.List;
 
 
 public class InventoryService {
+    private static final int SNAPSHOT_INTERVAL = 100;
 
     public List<InventoryItem> getFullInventory() throws SQLException {
         String sql = "SELECT i.*, " +
@@ -38,6 +39,13 @@ public class InventoryService {
     }
 
     public boolean updateStock(String itemType, int materialId, int quantityChange, Connection conn) throws SQLException {
+        return updateStock(itemType, materialId, quantityChange, "adjustment", null, conn);
+    }
+
+    // Applies the change and appends it to inventory_movements in the caller's transaction.
+    // False when there is no row to take a negative change from, so nothing was written
+    public boolean updateStock(String itemType, int materialId, int quantityChange,
+                               String reason, Integer referenceId, Connection conn) throws SQLException {
         String updateSql = "UPDATE component_inventory " +
                 "SET quantity = quantity + ?, last_updated = datetime('now') " +
                 "WHERE item_type = ? AND material_id = ?";
@@ -49,34 +57,146 @@ public class InventoryService {
             int affectedRows = pstmt.executeUpdate();
 
             if (affectedRows == 0 && quantityChange > 0) {
-                // Item doesn't exist - insert new record if adding stock
+                // Item doesn't exist - insert it empty (so no opening balance is logged) and add the stock
                 String insertSql = "INSERT INTO component_inventory (item_type, material_id, quantity) " +
-                        "VALUES (?, ?, ?)";
+                        "VALUES (?, ?, 0)";
                 try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
                     insertStmt.setString(1, itemType);
                     insertStmt.setInt(2, materialId);
-                    insertStmt.setInt(3, quantityChange);
                     insertStmt.executeUpdate();
                 }
+                affectedRows = pstmt.executeUpdate();
+            }
+
+            if (affectedRows > 0) {
+                recordMovement(conn, itemType, materialId, quantityChange, reason, referenceId);
+                if ("production".equals(reason) || "delivery".equals(reason)) {
+                    DemandForecastService.getInstance()
+                            .record(conn, itemType, materialId, reason, Math.abs(quantityChange));
+                }
             }
-            return true;
+            return affectedRows > 0;
         }
     }
 
-    public int getQuantity(String itemType, int materialId) throws SQLException {
-        String sql = "SELECT quantity FROM component_inventory " +
-                "WHERE item_type = ? AND material_id = ?";
+    private void recordMovement(Connection conn, String itemType, int materialId, int quantityChange,
+                                String reason, Integer referenceId) throws SQLException {
+        String sql = "INSERT INTO inventory_movements " +
+                "(item_type, material_id, quantity_change, reason, reference_id) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, itemType);
+            pstmt.setInt(2, materialId);
+            pstmt.setInt(3, quantityChange);
+            pstmt.setString(4, reason);
+            if (referenceId != null) {
+                pstmt.setInt(5, referenceId);
+            } else {
+                pstmt.setNull(5, Types.INTEGER);
+            }
+            pstmt.executeUpdate();
+        }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        // Snapshot a material once enough movements piled up since its last snapshot
+        String pendingSql = "SELECT COUNT(*) FROM inventory_movements " +
+                "WHERE item_type = ? AND material_id = ? AND movement_id > " +
+                "COALESCE((SELECT MAX(last_movement_id) FROM inventory_snapshots " +
+                "WHERE item_type = ? AND material_id = ?), 0)";
+        try (PreparedStatement pstmt = conn.prepareStatement(pendingSql)) {
+            pstmt.setString(1, itemType);
+            pstmt.setInt(2, materialId);
+            pstmt.setString(3, itemType);
+            pstmt.setInt(4, materialId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) >= SNAPSHOT_INTERVAL) {
+                    insertSnapshot(conn, itemType, materialId);
+                }
+            }
+        }
+    }
 
+    private void insertSnapshot(Connection conn, String itemType, int materialId) throws SQLException {
+        // The stock row and the ledger move together, so the row is the balance after the latest movement
+        String sql = "INSERT INTO inventory_snapshots " +
+                "(item_type, material_id, quantity, last_movement_id, snapshot_date) " +
+                "SELECT ci.item_type, ci.material_id, ci.quantity, m.movement_id, m.movement_date " +
+                "FROM component_inventory ci " +
+                "JOIN inventory_movements m ON m.movement_id = (SELECT MAX(movement_id) FROM inventory_movements " +
+                "WHERE item_type = ci.item_type AND material_id = ci.material_id) " +
+                "WHERE ci.item_type = ? AND ci.material_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, itemType);
             pstmt.setInt(2, materialId);
+            pstmt.executeUpdate();
+        }
+    }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() ? rs.getInt("quantity") : 0;
+    // Snapshots every material, e.g. at the end of the day, so replays stay short
+    public void takeSnapshots() throws SQLException {
+        String sql = "SELECT item_type, material_id FROM component_inventory";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Object[]> materials = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        materials.add(new Object[]{rs.getString("item_type"), rs.getInt("material_id")});
+                    }
+                }
+                for (Object[] material : materials) {
+                    insertSnapshot(conn, (String) material[0], (int) material[1]);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Rebuilds stock as of a date ("yyyy-MM-dd" means the end of that day) from the nearest snapshot
+    public int getStockAsOf(String itemType, int materialId, String asOf) throws SQLException {
+        String until = asOf.length() == 10 ? asOf + " 23:59:59" : asOf;
+        String snapshotSql = "SELECT quantity, last_movement_id FROM inventory_snapshots " +
+                "WHERE item_type = ? AND material_id = ? AND snapshot_date <= ? " +
+                "ORDER BY last_movement_id DESC LIMIT 1";
+        String replaySql = "SELECT COALESCE(SUM(quantity_change), 0) FROM inventory_movements " +
+                "WHERE item_type = ? AND material_id = ? AND movement_id > ? AND movement_date <= ?";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int quantity = 0;
+            long fromMovement = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(snapshotSql)) {
+                pstmt.setString(1, itemType);
+                pstmt.setInt(2, materialId);
+                pstmt.setString(3, until);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        quantity = rs.getInt("quantity");
+                        fromMovement = rs.getLong("last_movement_id");
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(replaySql)) {
+                pstmt.setString(1, itemType);
+                pstmt.setInt(2, materialId);
+                pstmt.setLong(3, fromMovement);
+                pstmt.setString(4, until);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return quantity + (rs.next() ? rs.getInt(1) : 0);
+                }
             }
         }
     }
 
+    // Served from memory; see StockCache
+    public int getQuantity(String itemType, int materialId) throws SQLException {
+        return StockCache.getInstance().getQuantity(itemType, materialId);
+    }
+
+    // Manual correction, persisted in the background by StockCache
+    public boolean adjustStock(String itemType, int materialId, int quantityChange) throws SQLException {
+        return StockCache.getInstance().adjust(itemType, materialId, quantityChange);
+    }
+
 }
@@ -0,0 +1,84 @@
+package service;
+
+import db.DatabaseConnection;
+import util.CountingBloomFilter;
+
+import java.sql.*;
+
+/**
+ * Bloom filter over every wand license in use. Lets license validation answer
+ * "definitely unused" without a query; possible hits are confirmed against the
+ * wand_license UNIQUE index by CustomerService.
+ */
+public class LicenseRegistry {
+    private static final LicenseRegistry INSTANCE = new LicenseRegistry();
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final int MIN_CAPACITY = 1024;
+
+    private volatile CountingBloomFilter filter;
+    // Bumped whenever a rebuilt filter is published
+    private volatile long generation;
+
+    private LicenseRegistry() {}
+
+    public static LicenseRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean mightBeInUse(String license) throws SQLException {
+        CountingBloomFilter current = filter;
+        if (current == null || current.isOverloaded()) {
+            current = rebuild();
+        }
+        return current.mightContain(normalize(license));
+    }
+
+    public synchronized CountingBloomFilter rebuild() throws SQLException {
+        int count = 0;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM customers WHERE wand_license IS NOT NULL")) {
+            if (rs.next()) {
+                count = rs.getInt(1);
+            }
+        }
+
+        // Leave room for growth so bulk registration does not trigger a rebuild right away
+        CountingBloomFilter rebuilt = new CountingBloomFilter(Math.max(count * 2, MIN_CAPACITY), FALSE_POSITIVE_RATE);
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT wand_license FROM customers WHERE wand_license IS NOT NULL")) {
+            while (rs.next()) {
+                rebuilt.add(normalize(rs.getString(1)));
+            }
+        }
+        filter = rebuilt;
+        generation++;
+        return rebuilt;
+    }
+
+    // Read before writing a license and passed to licenseChanged after the commit
+    public long currentGeneration() {
+        return generation;
+    }
+
+    // A filter rebuilt since the write may never have held the old license, and removing a
+    // value that was not added can hide a license that is in use, so the old value then stays.
+    // Adding is always safe: an extra count only costs a query later.
+    public synchronized void licenseChanged(long generationBeforeWrite, String oldLicense, String newLicense) {
+        CountingBloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        if (oldLicense != null && !oldLicense.trim().isEmpty() && generation == generationBeforeWrite) {
+            current.remove(normalize(oldLicense));
+        }
+        if (newLicense != null && !newLicense.trim().isEmpty()) {
+            current.add(normalize(newLicense));
+        }
+    }
+
+    private static String normalize(String license) {
+        return license.trim();
+    }
+}
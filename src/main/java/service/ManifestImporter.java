@@ -0,0 +1,182 @@
+package service;
+
+import db.DatabaseConnection;
+import model.Delivery;
+import model.DeliveryItem;
+import util.ManifestReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Turns a supplier manifest (CSV or JSON, one record per line item with
+ * type, material and quantity columns) into a recorded delivery. The file
+ * is streamed, names resolve through an in-memory name to id map, and every
+ * line is validated before anything is written. The delivery is then
+ * recorded with DeliveryService in one batched transaction. Lines for the
+ * same material are merged.
+ */
+public class ManifestImporter {
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final DeliveryService deliveryService = new DeliveryService();
+    private Map<String, Integer> woodIds;
+    private Map<String, Integer> coreIds;
+    private boolean reloadedForImport;
+
+    public static class ManifestException extends Exception {
+        private final List<String> errors;
+
+        public ManifestException(List<String> errors) {
+            super(errors.size() + " problem(s) in manifest: " + String.join("; ", errors));
+            this.errors = errors;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    // Nothing is recorded if any line is invalid
+    public Delivery importManifest(Path file, String supplierName, String receivedBy, String orderDate,
+                                   String notes) throws IOException, SQLException, ManifestException {
+        List<DeliveryItem> items = readItems(file);
+
+        Delivery delivery = new Delivery();
+        delivery.setSupplierName(supplierName);
+        delivery.setReceivedBy(receivedBy);
+        delivery.setOrderDate(orderDate);
+        delivery.setNotes(notes != null && !notes.isEmpty() ? notes : "Imported from " + file.getFileName());
+        delivery.setItems(items);
+        deliveryService.recordDelivery(delivery);
+        return delivery;
+    }
+
+    // Parses and validates the whole manifest without writing anything
+    public List<DeliveryItem> readItems(Path file) throws IOException, SQLException, ManifestException {
+        boolean json = file.getFileName().toString().toLowerCase().endsWith(".json");
+        Map<String, DeliveryItem> merged = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        int errorCount = 0;
+        synchronized (this) {
+            reloadedForImport = false;
+        }
+
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             ManifestReader reader = json ? ManifestReader.json(in) : ManifestReader.csv(in)) {
+            Map<String, String> record;
+            while ((record = reader.next()) != null) {
+                String problem = addLine(record, merged);
+                if (problem != null && ++errorCount <= MAX_REPORTED_ERRORS) {
+                    errors.add("line " + reader.getLineNumber() + ": " + problem);
+                }
+            }
+        }
+
+        if (errorCount > MAX_REPORTED_ERRORS) {
+            errors.add("and " + (errorCount - MAX_REPORTED_ERRORS) + " more");
+        }
+        if (merged.isEmpty() && errors.isEmpty()) {
+            errors.add("the manifest has no items");
+        }
+        if (!errors.isEmpty()) {
+            throw new ManifestException(errors);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // Drops the name maps, e.g. after wood types or cores were added
+    public synchronized void invalidate() {
+        woodIds = null;
+        coreIds = null;
+    }
+
+    private String addLine(Map<String, String> record, Map<String, DeliveryItem> merged) throws SQLException {
+        String type = firstOf(record, "item_type", "type");
+        String material = firstOf(record, "material", "material_name", "name");
+        String quantityText = firstOf(record, "quantity", "qty");
+
+        if (type == null || material == null || quantityText == null) {
+            return "needs type, material and quantity";
+        }
+        type = type.toLowerCase();
+        if (!type.equals("wood") && !type.equals("core")) {
+            return "type must be wood or core, not '" + type + "'";
+        }
+
+        int quantity;
+        try {
+            quantity = Integer.parseInt(quantityText);
+        } catch (NumberFormatException e) {
+            return "quantity '" + quantityText + "' is not a whole number";
+        }
+        if (quantity <= 0) {
+            return "quantity must be positive";
+        }
+
+        Integer materialId = resolve(type, material);
+        if (materialId == null) {
+            return "unknown " + type + " '" + material + "'";
+        }
+
+        String key = type + ":" + materialId;
+        DeliveryItem item = merged.get(key);
+        if (item == null) {
+            merged.put(key, new DeliveryItem(type, materialId, material, quantity));
+        } else {
+            item.setQuantity(item.getQuantity() + quantity);
+        }
+        return null;
+    }
+
+    private static String firstOf(Map<String, String> record, String... keys) {
+        for (String key : keys) {
+            String value = record.get(key);
+            if (value != null && !value.trim().isEmpty()) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+
+    // The first miss of an import reloads the maps, in case the material was added since they were built
+    private synchronized Integer resolve(String type, String name) throws SQLException {
+        if (woodIds == null) {
+            loadNames();
+            reloadedForImport = true;
+        }
+        String key = name.toLowerCase();
+        Integer id = (type.equals("wood") ? woodIds : coreIds).get(key);
+        if (id == null && !reloadedForImport) {
+            loadNames();
+            reloadedForImport = true;
+            id = (type.equals("wood") ? woodIds : coreIds).get(key);
+        }
+        return id;
+    }
+
+    private void loadNames() throws SQLException {
+        Map<String, Integer> woods = new HashMap<>();
+        Map<String, Integer> cores = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT wood_id, name FROM wood_types")) {
+                while (rs.next()) {
+                    woods.put(rs.getString("name").toLowerCase(), rs.getInt("wood_id"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT core_id, material FROM cores")) {
+                while (rs.next()) {
+                    cores.put(rs.getString("material").toLowerCase(), rs.getInt("core_id"));
+                }
+            }
+        }
+        woodIds = woods;
+        coreIds = cores;
+    }
+}
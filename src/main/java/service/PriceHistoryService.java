@@ -0,0 +1,211 @@
+package service;
+
+import db.DatabaseConnection;
+import model.PriceChange;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes price_history rows and answers "what did this wand cost on date X".
+ * Each wand's changes are loaded once (through the wand_id, change_date index)
+ * into a date-sorted log, so as-of lookups are a binary search.
+ */
+public class PriceHistoryService {
+    private static final PriceHistoryService INSTANCE = new PriceHistoryService();
+
+    private final Map<Integer, PriceLog> logs = new ConcurrentHashMap<>();
+    // Per-wand eviction count, only changed inside logs.compute for that wand
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    // Bumped by clear(), for loads of wands that had no version yet
+    private volatile long generation;
+
+    private PriceHistoryService() {}
+
+    public static PriceHistoryService getInstance() {
+        return INSTANCE;
+    }
+
+    // Must run inside the caller's transaction, next to the price UPDATE
+    public void insertChange(Connection conn, int wandId, double oldPrice, double newPrice,
+                             String reason) throws SQLException {
+        String sql = "INSERT INTO price_history (wand_id, old_price, new_price, reason) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, wandId);
+            stmt.setDouble(2, oldPrice);
+            stmt.setDouble(3, newPrice);
+            stmt.setString(4, reason);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Called after the transaction that wrote price_history has committed
+    public void changesCommitted(Collection<Integer> wandIds) {
+        for (Integer wandId : wandIds) {
+            evict(wandId);
+        }
+    }
+
+    public void wandDeleted(int wandId) {
+        evict(wandId);
+    }
+
+    // After a database reset: wand ids are reused, so no log may survive or be republished by a running load
+    public synchronized void clear() {
+        generation++;
+        Set<Integer> wandIds = new HashSet<>(logs.keySet());
+        wandIds.addAll(versions.keySet());
+        for (Integer wandId : wandIds) {
+            evict(wandId);
+        }
+    }
+
+    // Accepts a date ("yyyy-MM-dd", meaning the end of that day) or a full timestamp
+    public Double getPriceAsOf(int wandId, String asOf) throws SQLException {
+        return getLog(wandId).priceAsOf(asOf.length() == 10 ? asOf + " 23:59:59" : asOf);
+    }
+
+    public List<PriceChange> getChanges(int wandId) throws SQLException {
+        PriceLog log = getLog(wandId);
+        List<PriceChange> changes = new ArrayList<>();
+        for (int i = 0; i < log.dates.length; i++) {
+            changes.add(new PriceChange(wandId, log.oldPrices[i], log.newPrices[i], log.dates[i], log.reasons[i]));
+        }
+        return changes;
+    }
+
+    // Loads every log in one pass, for reports that look up many wands
+    public void preloadAll() throws SQLException {
+        long startedGeneration = generation;
+        Map<Integer, Long> started = new HashMap<>(versions);
+        Map<Integer, List<PriceChange>> changes = new HashMap<>();
+        Map<Integer, Double> currentPrices = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT wand_id, price FROM wands")) {
+                while (rs.next()) {
+                    currentPrices.put(rs.getInt("wand_id"), rs.getDouble("price"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM price_history " +
+                    "ORDER BY wand_id, change_date, price_change_id")) {
+                while (rs.next()) {
+                    changes.computeIfAbsent(rs.getInt("wand_id"), id -> new ArrayList<>()).add(extractChange(rs));
+                }
+            }
+        }
+        for (Map.Entry<Integer, Double> entry : currentPrices.entrySet()) {
+            List<PriceChange> wandChanges = changes.getOrDefault(entry.getKey(), Collections.emptyList());
+            publish(entry.getKey(), startedGeneration, started.getOrDefault(entry.getKey(), 0L),
+                    new PriceLog(wandChanges, entry.getValue()));
+        }
+    }
+
+    private PriceLog getLog(int wandId) throws SQLException {
+        PriceLog log = logs.get(wandId);
+        if (log == null) {
+            long startedGeneration = generation;
+            long started = versions.getOrDefault(wandId, 0L);
+            log = loadLog(wandId);
+            publish(wandId, startedGeneration, started, log);
+        }
+        return log;
+    }
+
+    private void evict(int wandId) {
+        logs.compute(wandId, (id, existing) -> {
+            versions.merge(id, 1L, Long::sum);
+            return null;
+        });
+    }
+
+    // A log read before a change was committed, or before a clear, is used by its caller but not cached
+    private void publish(int wandId, long startedGeneration, long startedVersion, PriceLog log) {
+        logs.compute(wandId, (id, existing) ->
+                generation == startedGeneration && versions.getOrDefault(id, 0L) == startedVersion
+                        ? log : existing);
+    }
+
+    private static PriceLog loadLog(int wandId) throws SQLException {
+        String priceSql = "SELECT price FROM wands WHERE wand_id = ?";
+        String historySql = "SELECT * FROM price_history WHERE wand_id = ? " +
+                "ORDER BY change_date, price_change_id";
+
+        List<PriceChange> changes = new ArrayList<>();
+        Double currentPrice = null;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(priceSql)) {
+                stmt.setInt(1, wandId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        currentPrice = rs.getDouble("price");
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(historySql)) {
+                stmt.setInt(1, wandId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        changes.add(extractChange(rs));
+                    }
+                }
+            }
+        }
+        return new PriceLog(changes, currentPrice);
+    }
+
+    private static PriceChange extractChange(ResultSet rs) throws SQLException {
+        return new PriceChange(
+                rs.getInt("wand_id"),
+                rs.getDouble("old_price"),
+                rs.getDouble("new_price"),
+                rs.getString("change_date"),
+                rs.getString("reason"));
+    }
+
+    private static class PriceLog {
+        private final String[] dates;
+        private final double[] oldPrices;
+        private final double[] newPrices;
+        private final String[] reasons;
+        private final Double currentPrice;
+
+        PriceLog(List<PriceChange> changes, Double currentPrice) {
+            int size = changes.size();
+            this.dates = new String[size];
+            this.oldPrices = new double[size];
+            this.newPrices = new double[size];
+            this.reasons = new String[size];
+            this.currentPrice = currentPrice;
+            for (int i = 0; i < size; i++) {
+                PriceChange change = changes.get(i);
+                dates[i] = change.getChangeDate();
+                oldPrices[i] = change.getOldPrice();
+                newPrices[i] = change.getNewPrice();
+                reasons[i] = change.getReason();
+            }
+        }
+
+        // Null for a wand that does not exist
+        Double priceAsOf(String asOf) {
+            if (dates.length == 0) {
+                return currentPrice;
+            }
+            // Last change made on or before asOf; dates sort as text
+            int low = 0;
+            int high = dates.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (dates[mid].compareTo(asOf) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 ? newPrices[found] : oldPrices[0];
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package service;
+
+import db.DatabaseConnection;
+import model.ProductionPlan;
+import model.ProductionTarget;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Picks the most valuable set of wands that can be built from the stock on
+ * hand. Every wand uses one wood and one core. plan() reads the available
+ * stock once from StockCache and solves in memory. A greedy pass goes by
+ * price, then unit exchanges are tried: give up one or two built wands to
+ * make room for a more valuable one, and refill whatever is freed. The
+ * result is not always optimal, but it stays close and takes milliseconds
+ * for a week's worth of targets. commit() builds the whole plan in one
+ * batched transaction.
+ */
+public class ProductionPlanner {
+    private static final int MAX_IMPROVEMENT_ROUNDS = 10_000;
+    private static final double EPSILON = 1e-9;
+
+    private final InventoryService inventoryService = new InventoryService();
+
+    public ProductionPlan plan(List<ProductionTarget> targets) throws SQLException {
+        Problem problem = new Problem(targets);
+        int[] quantities = new int[targets.size()];
+        int[] woodLeft = problem.woodStock.clone();
+        int[] coreLeft = problem.coreStock.clone();
+        problem.fill(quantities, woodLeft, coreLeft);
+
+        for (int round = 0; round < MAX_IMPROVEMENT_ROUNDS; round++) {
+            State better = problem.improve(new State(quantities, woodLeft, coreLeft));
+            if (better == null) {
+                break;
+            }
+            quantities = better.quantities;
+            woodLeft = better.woodLeft;
+            coreLeft = better.coreLeft;
+        }
+        return new ProductionPlan(targets, quantities);
+    }
+
+    // Returns the number of wands built; fails without building anything if the stock moved since plan()
+    public int commit(ProductionPlan plan) throws SQLException {
+        Map<String, Integer> needed = new LinkedHashMap<>();
+        List<ProductionTarget> targets = plan.getTargets();
+        for (int i = 0; i < targets.size(); i++) {
+            int quantity = plan.getQuantity(i);
+            if (quantity > 0) {
+                needed.merge("wood:" + targets.get(i).getWoodId(), quantity, Integer::sum);
+                needed.merge("core:" + targets.get(i).getCoreId(), quantity, Integer::sum);
+            }
+        }
+        if (needed.isEmpty()) {
+            return 0;
+        }
+
+        StockCache stock = StockCache.getInstance();
+        Map<String, Integer> reserved = new LinkedHashMap<>();
+        long version;
+        try {
+            for (Map.Entry<String, Integer> entry : needed.entrySet()) {
+                String[] material = entry.getKey().split(":");
+                if (!stock.tryReserve(material[0], Integer.parseInt(material[1]), entry.getValue())) {
+                    throw new SQLException("Stock changed since the plan was made, please plan again");
+                }
+                reserved.put(entry.getKey(), entry.getValue());
+            }
+
+            // Pending stock adjustments must reach the database before it is decremented there
+            stock.flush();
+            version = insertPlan(plan, needed);
+        } catch (SQLException | RuntimeException e) {
+            for (Map.Entry<String, Integer> entry : reserved.entrySet()) {
+                String[] material = entry.getKey().split(":");
+                stock.release(material[0], Integer.parseInt(material[1]), entry.getValue());
+            }
+            throw e;
+        }
+
+        for (Map.Entry<String, Integer> entry : needed.entrySet()) {
+            String[] material = entry.getKey().split(":");
+            stock.consumeReserved(material[0], Integer.parseInt(material[1]), entry.getValue(), version);
+        }
+        // The batch insert does not report the new ids, so the allocation index reloads instead
+        WandAllocationIndex.getInstance().invalidate();
+        WandService.catalogChanged();
+        return plan.getTotalWands();
+    }
+
+    // Returns the component_inventory version it committed
+    private long insertPlan(ProductionPlan plan, Map<String, Integer> needed) throws SQLException {
+        String sql = "INSERT INTO wands (wood_id, core_id, length, flexibility, condition, price, status) " +
+                "VALUES (?, ?, ?, ?, 'new', ?, 'in_stock')";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    List<ProductionTarget> targets = plan.getTargets();
+                    for (int i = 0; i < targets.size(); i++) {
+                        ProductionTarget target = targets.get(i);
+                        for (int n = 0; n < plan.getQuantity(i); n++) {
+                            stmt.setInt(1, target.getWoodId());
+                            stmt.setInt(2, target.getCoreId());
+                            stmt.setDouble(3, target.getLength());
+                            stmt.setString(4, target.getFlexibility());
+                            stmt.setDouble(5, target.getPrice());
+                            stmt.addBatch();
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+
+                // One ledger movement per material for the whole run
+                for (Map.Entry<String, Integer> entry : needed.entrySet()) {
+                    String[] material = entry.getKey().split(":");
+                    if (!inventoryService.updateStock(material[0], Integer.parseInt(material[1]), -entry.getValue(),
+                            "production", null, conn)) {
+                        throw new SQLException("No inventory row for " + entry.getKey());
+                    }
+                }
+                long version = StockCache.inventoryVersion(conn);
+                conn.commit();
+                return version;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static class State {
+        private final int[] quantities;
+        private final int[] woodLeft;
+        private final int[] coreLeft;
+
+        State(int[] quantities, int[] woodLeft, int[] coreLeft) {
+            this.quantities = quantities;
+            this.woodLeft = woodLeft;
+            this.coreLeft = coreLeft;
+        }
+
+        State copy() {
+            return new State(quantities.clone(), woodLeft.clone(), coreLeft.clone());
+        }
+    }
+
+    // Targets with their materials mapped to dense indexes, and the stock read once
+    private static class Problem {
+        private final List<ProductionTarget> targets;
+        private final int[] wood;
+        private final int[] core;
+        private final int[] woodStock;
+        private final int[] coreStock;
+        private final Integer[] byPrice;
+
+        Problem(List<ProductionTarget> targets) throws SQLException {
+            this.targets = targets;
+            Map<Integer, Integer> woodIndex = new HashMap<>();
+            Map<Integer, Integer> coreIndex = new HashMap<>();
+            wood = new int[targets.size()];
+            core = new int[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                wood[i] = woodIndex.computeIfAbsent(targets.get(i).getWoodId(), id -> woodIndex.size());
+                core[i] = coreIndex.computeIfAbsent(targets.get(i).getCoreId(), id -> coreIndex.size());
+            }
+
+            StockCache stock = StockCache.getInstance();
+            woodStock = new int[woodIndex.size()];
+            coreStock = new int[coreIndex.size()];
+            for (Map.Entry<Integer, Integer> entry : woodIndex.entrySet()) {
+                woodStock[entry.getValue()] = Math.max(0, stock.getAvailable("wood", entry.getKey()));
+            }
+            for (Map.Entry<Integer, Integer> entry : coreIndex.entrySet()) {
+                coreStock[entry.getValue()] = Math.max(0, stock.getAvailable("core", entry.getKey()));
+            }
+
+            byPrice = new Integer[targets.size()];
+            for (int i = 0; i < byPrice.length; i++) {
+                byPrice[i] = i;
+            }
+            Arrays.sort(byPrice, (a, b) -> Double.compare(targets.get(b).getPrice(), targets.get(a).getPrice()));
+        }
+
+        // Greedy pass: the most expensive targets take what is left first
+        void fill(int[] quantities, int[] woodLeft, int[] coreLeft) {
+            for (int i : byPrice) {
+                int room = targets.get(i).getMaxQuantity() - quantities[i];
+                int n = Math.min(room, Math.min(woodLeft[wood[i]], coreLeft[core[i]]));
+                if (n > 0) {
+                    quantities[i] += n;
+                    woodLeft[wood[i]] -= n;
+                    coreLeft[core[i]] -= n;
+                }
+            }
+        }
+
+        double value(int[] quantities) {
+            double total = 0;
+            for (int i = 0; i < quantities.length; i++) {
+                total += quantities[i] * targets.get(i).getPrice();
+            }
+            return total;
+        }
+
+        // First exchange that raises the plan's value, or null at a local optimum
+        State improve(State current) {
+            double currentValue = value(current.quantities);
+            for (int t : byPrice) {
+                if (current.quantities[t] >= targets.get(t).getMaxQuantity()) {
+                    continue;
+                }
+                boolean woodShort = current.woodLeft[wood[t]] == 0;
+                boolean coreShort = current.coreLeft[core[t]] == 0;
+                if (!woodShort && !coreShort) {
+                    continue;
+                }
+
+                // Candidates to give up a unit: -1 means the material is not short and nothing is given up
+                for (int u : donors(current, t, woodShort, true)) {
+                    for (int v : donors(current, t, coreShort, false)) {
+                        State next = current.copy();
+                        release(next, u);
+                        if (v != u) {
+                            release(next, v);   // a donor of the same wood and core frees both at once
+                        }
+                        if (next.woodLeft[wood[t]] == 0 || next.coreLeft[core[t]] == 0) {
+                            continue;
+                        }
+                        next.quantities[t]++;
+                        next.woodLeft[wood[t]]--;
+                        next.coreLeft[core[t]]--;
+                        fill(next.quantities, next.woodLeft, next.coreLeft);
+                        if (value(next.quantities) > currentValue + EPSILON) {
+                            return next;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private List<Integer> donors(State state, int t, boolean isShort, boolean byWood) {
+            List<Integer> result = new ArrayList<>();
+            if (!isShort) {
+                result.add(-1);
+                return result;
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                boolean shares = byWood ? wood[i] == wood[t] : core[i] == core[t];
+                if (i != t && shares && state.quantities[i] > 0) {
+                    result.add(i);
+                }
+            }
+            return result;
+        }
+
+        private void release(State state, int i) {
+            if (i < 0 || state.quantities[i] == 0) {
+                return;
+            }
+            state.quantities[i]--;
+            state.woodLeft[wood[i]]++;
+            state.coreLeft[core[i]]++;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package service;
+
+import db.DatabaseConnection;
+import model.ReportResult;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the heavy reports on a background thread and keeps the last completed
+ * result of each. A report is recomputed when one of the tables it reads has
+ * changed (according to the trigger-maintained table_versions counters) or
+ * when its result is older than the report's maximum age. Screens read the
+ * cached result, so several clerks opening the same report share one query.
+ */
+public class ReportScheduler {
+    public static final String ALL_SALES = "all_sales";
+    public static final String INVENTORY = "inventory";
+    public static final String DELIVERY_HISTORY = "delivery_history";
+
+    private static final ReportScheduler INSTANCE = new ReportScheduler();
+    private static final long POLL_SECONDS = 5;
+
+    public interface ReportQuery<T> {
+        T run() throws SQLException;
+    }
+
+    private final Map<String, ScheduledReport<?>> reports = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    private ReportScheduler() {
+        InventoryService inventoryService = new InventoryService();
+        DeliveryService deliveryService = new DeliveryService();
+        register(ALL_SALES, ReportingService::getAllSales, Duration.ofMinutes(10),
+                "sales", "wands", "customers");
+        register(INVENTORY, inventoryService::getFullInventory, Duration.ofMinutes(10),
+                "component_inventory");
+        register(DELIVERY_HISTORY, deliveryService::getDeliveryHistory, Duration.ofMinutes(30),
+                "inventory_deliveries", "delivery_items");
+    }
+
+    public static ReportScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public <T> void register(String name, ReportQuery<T> query, Duration maxAge, String... tables) {
+        reports.put(name, new ScheduledReport<>(query, maxAge, tables));
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "report-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::refreshStale, 0, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // Last completed result; only computed on the caller's thread if there is none yet
+    public <T> ReportResult<T> getLatest(String name) throws SQLException {
+        ScheduledReport<T> report = lookup(name);
+        ReportResult<T> latest = report.latest;
+        return latest != null ? latest : report.refreshIfStale(currentVersions());
+    }
+
+    // Brings the result up to date now; returns the cached one if no source table changed
+    public <T> ReportResult<T> refresh(String name) throws SQLException {
+        ScheduledReport<T> report = lookup(name);
+        return report.refreshIfStale(currentVersions());
+    }
+
+    // After a database reset the table_versions counters start over and could match a cached version
+    public void reset() {
+        for (ScheduledReport<?> report : reports.values()) {
+            report.clear();
+        }
+    }
+
+    private void refreshStale() {
+        Map<String, Long> versions;
+        try {
+            versions = currentVersions();
+        } catch (SQLException e) {
+            System.err.println("Failed to read table versions: " + e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, ScheduledReport<?>> entry : reports.entrySet()) {
+            try {
+                entry.getValue().refreshIfStale(versions);
+            } catch (SQLException e) {
+                System.err.println("Failed to refresh report " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ScheduledReport<T> lookup(String name) {
+        ScheduledReport<?> report = reports.get(name);
+        if (report == null) {
+            throw new IllegalArgumentException("Unknown report: " + name);
+        }
+        return (ScheduledReport<T>) report;
+    }
+
+    private static Map<String, Long> currentVersions() throws SQLException {
+        Map<String, Long> versions = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT table_name, version FROM table_versions")) {
+            while (rs.next()) {
+                versions.put(rs.getString("table_name"), rs.getLong("version"));
+            }
+        }
+        return versions;
+    }
+
+    private static class ScheduledReport<T> {
+        private final ReportQuery<T> query;
+        private final Duration maxAge;
+        private final String[] tables;
+        private volatile ReportResult<T> latest;
+
+        ScheduledReport(ReportQuery<T> query, Duration maxAge, String[] tables) {
+            this.query = query;
+            this.maxAge = maxAge;
+            this.tables = tables;
+        }
+
+        // Callers arriving while a refresh runs wait for it and then get its result
+        synchronized ReportResult<T> refreshIfStale(Map<String, Long> versions) throws SQLException {
+            long version = dataVersion(versions);
+            ReportResult<T> current = latest;
+            if (current != null
+                    && current.getDataVersion() == version
+                    && current.getComputedAt().plus(maxAge).isAfter(LocalDateTime.now())) {
+                return current;
+            }
+
+            // The version is read before the query, so changes made while it runs trigger another refresh
+            current = new ReportResult<>(query.run(), version, LocalDateTime.now());
+            latest = current;
+            return current;
+        }
+
+        synchronized void clear() {
+            latest = null;
+        }
+
+        private long dataVersion(Map<String, Long> versions) {
+            long version = 0;
+            for (String table : tables) {
+                version += versions.getOrDefault(table, 0L);
+            }
+            return version;
+        }
+    }
+}
@@ -3,13 +3,11 @@ package service;
 import db.DatabaseConnection;
 import model.Purchase;
 import model.Wand;
+import model.WandAllocation;
 
 import java.sql.*;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class ReportingService {
 
@@ -58,6 +56,31 @@ public class ReportingService {
         return wandIds;
     }
 
+    // Wands that can still be sold
+    public static List<Integer> getAvailableWandIds() throws SQLException {
+        return getAvailableWandIds(null);
+    }
+
+    // In-stock wands plus those reserved for heldBy, i.e. what that clerk may sell
+    public static List<Integer> getAvailableWandIds(String heldBy) throws SQLException {
+        List<Integer> wandIds = new ArrayList<>();
+        String sql = "SELECT wand_id FROM wands WHERE status = 'in_stock' " +
+                "OR (status = 'reserved' AND wand_id IN (SELECT wand_id FROM wand_allocations " +
+                "WHERE held_by = ? AND expires_at > datetime('now'))) " +
+                "ORDER BY wand_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, heldBy);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    wandIds.add(rs.getInt("wand_id"));
+                }
+            }
+        }
+        return wandIds;
+    }
+
     public static int getWandIdByName(int wand_id) throws SQLException {
         String query = "SELECT id FROM wands WHERE wand_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -130,24 +153,296 @@ public class ReportingService {
     }
 
     public static boolean createPurchase(Purchase purchase) throws SQLException {
-        String query = "INSERT INTO sales (wand_id, customer_id, sale_date, sale_price, payment_method) VALUES (?, ?, ?, ?, ?)";
+        return createPurchase(purchase, null);
+    }
+
+    // A retry with the same idempotency key returns without selling the wand again
+    public static boolean createPurchase(Purchase purchase, String idempotencyKey) throws SQLException {
+        return createPurchase(purchase, null, idempotencyKey);
+    }
+
+    // allocation is needed only if the wand was reserved at the counter, and may be null otherwise
+    public static boolean createPurchase(Purchase purchase, WandAllocation allocation,
+                                         String idempotencyKey) throws SQLException {
+        List<WandAllocation> allocations = allocation != null ? List.of(allocation) : List.of();
+        purchase.setPurchaseId(checkout(List.of(purchase), allocations, idempotencyKey));
+        return true;
+    }
+
+    /**
+     * Sells one or more wands to one customer atomically. BEGIN IMMEDIATE takes
+     * the write lock up front, so two terminals cannot both pass the
+     * availability check, and the conditional UPDATE only flips wands that are
+     * still in stock, or reserved for an allocation the caller passed in. If
+     * any wand is gone or held by someone else, nothing is sold. Returns the sale_id
+     * of the last sales row. With an idempotency key, a repeated call returns
+     * the first call's result and writes nothing; the same key with different
+     * wands, prices or customer is refused.
+     */
+    public static int checkout(List<Purchase> purchases) throws SQLException {
+        return checkout(purchases, List.of(), null);
+    }
+
+    public static int checkout(List<Purchase> purchases, String idempotencyKey) throws SQLException {
+        return checkout(purchases, List.of(), idempotencyKey);
+    }
+
+    public static int checkout(List<Purchase> purchases, Collection<WandAllocation> allocations,
+                               String idempotencyKey) throws SQLException {
+        IdempotencyService idempotency = IdempotencyService.getInstance();
+        String fingerprint = idempotencyKey != null ? purchaseFingerprint(purchases) : null;
+        if (idempotencyKey != null) {
+            Integer previous = idempotency.cached(IdempotencyService.PURCHASE, idempotencyKey, fingerprint);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        if (purchases.isEmpty()) {
+            throw new SQLException("Nothing to check out");
+        }
+        Set<Integer> wandIds = new LinkedHashSet<>();
+        for (Purchase purchase : purchases) {
+            if (purchase.getCustomerId() != purchases.get(0).getCustomerId()) {
+                throw new SQLException("A checkout is for a single customer");
+            }
+            if (!wandIds.add(purchase.getWandId())) {
+                throw new SQLException("Wand " + purchase.getWandId() + " is in the checkout twice");
+            }
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(wandIds.size(), "?"));
+        // The holder's token ends the allocation, unless it already expired; see WandAllocationIndex
+        String allocationSql = "DELETE FROM wand_allocations WHERE wand_id = ? AND allocation_token = ? " +
+                "AND expires_at > datetime('now')";
+        String saleSql = "INSERT INTO sales (wand_id, customer_id, sale_date, sale_price, payment_method) VALUES (?, ?, ?, ?, ?)";
+        String saleDate = new SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date());
+
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement preparedStatement = conn.prepareStatement(query)){
-            preparedStatement.setInt(1, purchase.getWandId());
-            preparedStatement.setInt(2, purchase.getCustomerId());
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            String currentDate = dateFormat.format(new java.util.Date());
-            preparedStatement.setString(3, currentDate);
-            preparedStatement.setDouble(4, purchase.getSalePrice());
-            String paymentMethod = purchase.getPaymentMethod();
-            if (paymentMethod != null && !paymentMethod.isEmpty()) {
-                paymentMethod = Character.toLowerCase(paymentMethod.charAt(0)) + paymentMethod.substring(1);
+             Statement tx = conn.createStatement()) {
+            tx.execute("BEGIN IMMEDIATE");
+            boolean open = true;
+            int saleId;
+            try {
+                if (idempotencyKey != null) {
+                    Integer previous = idempotency.claim(conn, IdempotencyService.PURCHASE, idempotencyKey,
+                            fingerprint);
+                    if (previous != null) {
+                        tx.execute("ROLLBACK");
+                        open = false;
+                        idempotency.remember(IdempotencyService.PURCHASE, idempotencyKey, previous, fingerprint);
+                        return previous;
+                    }
+                }
+
+                // Reserved wands can only be sold through the allocation that holds them
+                List<Integer> held = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(allocationSql)) {
+                    for (WandAllocation allocation : allocations) {
+                        if (wandIds.contains(allocation.getWandId())) {
+                            stmt.setInt(1, allocation.getWandId());
+                            stmt.setString(2, allocation.getToken());
+                            if (stmt.executeUpdate() > 0) {
+                                held.add(allocation.getWandId());
+                            }
+                        }
+                    }
+                }
+                String soldSql = "UPDATE wands SET status = 'sold' WHERE wand_id IN (" + placeholders + ") " +
+                        "AND (status = 'in_stock'" + (held.isEmpty() ? "" : " OR (status = 'reserved' AND wand_id IN ("
+                        + String.join(", ", Collections.nCopies(held.size(), "?")) + "))") + ")";
+
+                try (PreparedStatement stmt = conn.prepareStatement(soldSql)) {
+                    int index = 1;
+                    for (int wandId : wandIds) {
+                        stmt.setInt(index++, wandId);
+                    }
+                    for (int wandId : held) {
+                        stmt.setInt(index++, wandId);
+                    }
+                    if (stmt.executeUpdate() != wandIds.size()) {
+                        tx.execute("ROLLBACK");
+                        open = false;
+                        throw new SQLException("No longer available: " + unavailableWands(conn, wandIds, held));
+                    }
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(saleSql)) {
+                    for (Purchase purchase : purchases) {
+                        stmt.setInt(1, purchase.getWandId());
+                        stmt.setInt(2, purchase.getCustomerId());
+                        stmt.setString(3, saleDate);
+                        stmt.setDouble(4, purchase.getSalePrice());
+                        stmt.setString(5, normalizePaymentMethod(purchase.getPaymentMethod()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+
+                try (ResultSet rs = tx.executeQuery("SELECT last_insert_rowid()")) {
+                    rs.next();
+                    saleId = rs.getInt(1);
+                }
+                if (idempotencyKey != null) {
+                    idempotency.complete(conn, IdempotencyService.PURCHASE, idempotencyKey, saleId);
+                }
+                tx.execute("COMMIT");
+                open = false;
+            } catch (SQLException | RuntimeException e) {
+                if (open) {
+                    tx.execute("ROLLBACK");
+                }
+                throw e;
             }
-            preparedStatement.setString(5, paymentMethod);
 
-            int rowsAffected = preparedStatement.executeUpdate();
-            return rowsAffected > 0;
+            // In-memory views only learn about sales that actually committed
+            SalesAnalyticsService.getInstance().invalidate();
+            WandAllocationIndex.getInstance().wandsRemoved(wandIds);
+            WandService.wandsChanged(wandIds);
+            for (Purchase purchase : purchases) {
+                purchase.setSaleDate(saleDate);
+                SalesStatisticsService.getInstance().recordSale(conn, purchase.getWandId(),
+                        purchase.getCustomerId(), saleDate, purchase.getSalePrice());
+                WandComboTracker.getInstance().recordSale(conn, purchase.getWandId());
+            }
+            if (idempotencyKey != null) {
+                idempotency.remember(IdempotencyService.PURCHASE, idempotencyKey, saleId, fingerprint);
+            }
+            return saleId;
         }
     }
-}
 
+    // Customer plus each wand with its price and payment method, in wand order so the list order does not matter
+    private static String purchaseFingerprint(List<Purchase> purchases) {
+        List<Purchase> sorted = new ArrayList<>(purchases);
+        sorted.sort(Comparator.comparingInt(Purchase::getWandId));
+        List<String> parts = new ArrayList<>();
+        parts.add(purchases.isEmpty() ? "" : String.valueOf(purchases.get(0).getCustomerId()));
+        for (Purchase purchase : sorted) {
+            parts.add(purchase.getWandId() + "=" + purchase.getSalePrice() + " "
+                    + normalizePaymentMethod(purchase.getPaymentMethod()));
+        }
+        return IdempotencyService.fingerprint(parts.toArray(new String[0]));
+    }
+
+    private static String unavailableWands(Connection conn, Set<Integer> wandIds,
+                                           List<Integer> held) throws SQLException {
+        String sql = "SELECT status FROM wands WHERE wand_id = ?";
+        List<String> unavailable = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int wandId : wandIds) {
+                stmt.setInt(1, wandId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        unavailable.add("wand " + wandId + " (not found)");
+                    } else if ("sold".equals(rs.getString("status")) || "defective".equals(rs.getString("status"))) {
+                        unavailable.add("wand " + wandId + " (" + rs.getString("status") + ")");
+                    } else if ("reserved".equals(rs.getString("status")) && !held.contains(wandId)) {
+                        unavailable.add("wand " + wandId + " (reserved for another sale)");
+                    }
+                }
+            }
+        }
+        return String.join(", ", unavailable);
+    }
+
+    private static String normalizePaymentMethod(String paymentMethod) {
+        if (paymentMethod != null && !paymentMethod.isEmpty()) {
+            return Character.toLowerCase(paymentMethod.charAt(0)) + paymentMethod.substring(1);
+        }
+        return paymentMethod;
+    }
+
+    public static List<Map<String, Object>> getDailyRevenue(String fromDate, String toDate) throws SQLException {
+        String sql = "SELECT sale_date AS period, SUM(units) AS units, SUM(revenue) AS revenue " +
+                "FROM sales_daily_rollup " +
+                "WHERE sale_date BETWEEN ? AND ? " +
+                "GROUP BY sale_date ORDER BY sale_date";
+        return queryRevenue(sql, fromDate, toDate);
+    }
+
+    public static List<Map<String, Object>> getMonthlyRevenue(int year) throws SQLException {
+        String sql = "SELECT substr(sale_date, 1, 7) AS period, SUM(units) AS units, SUM(revenue) AS revenue " +
+                "FROM sales_daily_rollup " +
+                "WHERE sale_date >= ? AND sale_date < ? " +
+                "GROUP BY period ORDER BY period";
+        return queryRevenue(sql, year + "-01-01", (year + 1) + "-01-01");
+    }
+
+    public static List<Map<String, Object>> getYearlyRevenue() throws SQLException {
+        String sql = "SELECT substr(sale_date, 1, 4) AS period, SUM(units) AS units, SUM(revenue) AS revenue " +
+                "FROM sales_daily_rollup " +
+                "GROUP BY period ORDER BY period";
+        return queryRevenue(sql);
+    }
+
+    private static List<Map<String, Object>> queryRevenue(String sql, String... params) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < params.length; i++) {
+                stmt.setString(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("period", rs.getString("period"));
+                    row.put("units", rs.getInt("units"));
+                    row.put("revenue", rs.getDouble("revenue"));
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    public static List<Map<String, Object>> getPopularWoods(int limit) throws SQLException {
+        List<Map<String, Object>> woods = new ArrayList<>();
+        String sql = "SELECT wood_name, sales_count FROM popular_woods LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int rank = 1;
+                while (rs.next()) {
+                    Map<String, Object> wood = new HashMap<>();
+                    wood.put("rank", rank++);
+                    wood.put("wood_name", rs.getString("wood_name"));
+                    wood.put("sales_count", rs.getInt("sales_count"));
+                    woods.add(wood);
+                }
+            }
+        }
+        return woods;
+    }
+
+    // Approximate best-selling wood x core x length combinations, with min/max bounds on each count
+    public static List<Map<String, Object>> getTopWandCombinations(int k) throws SQLException {
+        return WandComboTracker.getInstance().top(k);
+    }
+
+    // Recomputes the rollup from the sales table, for repairs after manual data fixes
+    public static void rebuildSalesRollup() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            try {
+                stmt.executeUpdate("DELETE FROM sales_daily_rollup");
+                stmt.executeUpdate("INSERT INTO sales_daily_rollup " +
+                        "(sale_date, wood_id, core_id, payment_method, units, revenue) " +
+                        "SELECT date(s.sale_date), w.wood_id, w.core_id, COALESCE(s.payment_method, ''), " +
+                        "COUNT(*), SUM(s.sale_price) " +
+                        "FROM sales s JOIN wands w ON s.wand_id = w.wand_id " +
+                        "GROUP BY date(s.sale_date), w.wood_id, w.core_id, COALESCE(s.payment_method, '')");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package service;
+
+import db.DatabaseConnection;
+import model.PriceUpdate;
+import model.RepricingRule;
+import model.WandFilter;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk repricing. preview() evaluates the rules in parallel over the catalogue
+ * and returns the diff without writing anything; apply() writes a diff with
+ * batched UPDATEs and price_history inserts, one transaction per chunk.
+ * For each wand the first matching rule wins.
+ */
+public class RepricingService {
+    private static final int CHUNK_SIZE = 500;
+    private static final double MIN_PRICE = 0.01;
+
+    public List<PriceUpdate> preview(List<RepricingRule> rules) throws SQLException {
+        validate(rules);
+        List<CatalogRow> catalog = loadCatalog();
+        return catalog.parallelStream()
+                .map(row -> evaluate(row, rules))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Returns the number of wands repriced; wands whose price moved since the preview are skipped
+    public int apply(List<PriceUpdate> updates) throws SQLException {
+        String updateSql = "UPDATE wands SET price = ? WHERE wand_id = ? AND price = ?";
+        String historySql = "INSERT INTO price_history (wand_id, old_price, new_price, reason, changed_by) " +
+                "VALUES (?, ?, ?, ?, 'repricing')";
+
+        int applied = 0;
+        List<Integer> changedIds = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            for (int start = 0; start < updates.size(); start += CHUNK_SIZE) {
+                List<PriceUpdate> chunk = updates.subList(start, Math.min(updates.size(), start + CHUNK_SIZE));
+                List<Integer> chunkIds = new ArrayList<>();
+                try (PreparedStatement update = conn.prepareStatement(updateSql);
+                     PreparedStatement history = conn.prepareStatement(historySql)) {
+
+                    for (PriceUpdate priceUpdate : chunk) {
+                        update.setDouble(1, priceUpdate.getNewPrice());
+                        update.setInt(2, priceUpdate.getWandId());
+                        update.setDouble(3, priceUpdate.getOldPrice());
+                        update.addBatch();
+                    }
+                    int[] counts = update.executeBatch();
+
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0) {
+                            PriceUpdate priceUpdate = chunk.get(i);
+                            history.setInt(1, priceUpdate.getWandId());
+                            history.setDouble(2, priceUpdate.getOldPrice());
+                            history.setDouble(3, priceUpdate.getNewPrice());
+                            history.setString(4, priceUpdate.getReason());
+                            history.addBatch();
+                            chunkIds.add(priceUpdate.getWandId());
+                        }
+                    }
+                    history.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                changedIds.addAll(chunkIds);
+                applied += chunkIds.size();
+            }
+        } finally {
+            // Chunks committed before a failure stay applied, so the caches must see them either way
+            if (!changedIds.isEmpty()) {
+                PriceHistoryService.getInstance().changesCommitted(changedIds);
+                WandService.wandsChanged(changedIds);
+            }
+        }
+        return applied;
+    }
+
+    // A rule without an action would still win its wands and silently block every later rule
+    private static void validate(List<RepricingRule> rules) {
+        for (int i = 0; i < rules.size(); i++) {
+            RepricingRule rule = rules.get(i);
+            if (rule.getFixedPrice() == null && rule.getPercentChange() == null) {
+                throw new IllegalArgumentException("Rule " + (i + 1) + " has neither a fixed price nor a percent change");
+            }
+        }
+    }
+
+    private static PriceUpdate evaluate(CatalogRow row, List<RepricingRule> rules) {
+        for (RepricingRule rule : rules) {
+            if (!matches(row, rule)) {
+                continue;
+            }
+            double newPrice;
+            if (rule.getFixedPrice() != null) {
+                newPrice = rule.getFixedPrice();
+            } else if (rule.getPercentChange() != null) {
+                newPrice = row.price * (1 + rule.getPercentChange() / 100.0);
+            } else {
+                continue;
+            }
+            newPrice = Math.max(MIN_PRICE, Math.round(newPrice * 100) / 100.0);
+            if (Double.compare(newPrice, row.price) == 0) {
+                return null;
+            }
+            return new PriceUpdate(row.wandId, row.woodName, row.coreMaterial, row.price, newPrice, rule.getReason());
+        }
+        return null;
+    }
+
+    private static boolean matches(CatalogRow row, RepricingRule rule) {
+        if (!rule.getWoodNames().isEmpty() && !rule.getWoodNames().contains(row.woodName)) return false;
+        if (!rule.getCoreMaterials().isEmpty() && !rule.getCoreMaterials().contains(row.coreMaterial)) return false;
+
+        WandFilter filter = rule.getFilter();
+        if (filter == null) return true;
+        if (filter.getMinLength() != null && row.length < filter.getMinLength()) return false;
+        if (filter.getMaxLength() != null && row.length > filter.getMaxLength()) return false;
+        if (filter.getMinPrice() != null && row.price < filter.getMinPrice()) return false;
+        if (filter.getMaxPrice() != null && row.price > filter.getMaxPrice()) return false;
+        if (!filter.getFlexibilities().isEmpty() && !filter.getFlexibilities().contains(row.flexibility)) return false;
+        if (!filter.getConditions().isEmpty() && !filter.getConditions().contains(row.condition)) return false;
+        if (!filter.getStatuses().isEmpty() && !filter.getStatuses().contains(row.status)) return false;
+        if (!filter.getWoodRarities().isEmpty() && !filter.getWoodRarities().contains(row.woodRarity)) return false;
+        return filter.getCorePowerLevels().isEmpty() || filter.getCorePowerLevels().contains(row.corePower);
+    }
+
+    private static List<CatalogRow> loadCatalog() throws SQLException {
+        String sql = "SELECT w.wand_id, w.length, w.flexibility, w.condition, w.price, w.status, " +
+                "wt.name AS wood_name, wt.rarity, c.material AS core_material, c.power_level " +
+                "FROM wands w " +
+                "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+                "JOIN cores c ON w.core_id = c.core_id";
+
+        List<CatalogRow> catalog = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                CatalogRow row = new CatalogRow();
+                row.wandId = rs.getInt("wand_id");
+                row.length = rs.getDouble("length");
+                row.flexibility = rs.getString("flexibility");
+                row.condition = rs.getString("condition");
+                row.price = rs.getDouble("price");
+                row.status = rs.getString("status");
+                row.woodName = rs.getString("wood_name");
+                row.woodRarity = rs.getString("rarity");
+                row.coreMaterial = rs.getString("core_material");
+                row.corePower = rs.getInt("power_level");
+                catalog.add(row);
+            }
+        }
+        return catalog;
+    }
+
+    private static class CatalogRow {
+        private int wandId;
+        private double length;
+        private String flexibility;
+        private String condition;
+        private double price;
+        private String status;
+        private String woodName;
+        private String woodRarity;
+        private String coreMaterial;
+        private int corePower;
+    }
+}
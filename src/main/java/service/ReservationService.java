@@ -0,0 +1,119 @@
+package service;
+
+import model.Reservation;
+import util.TimingWheel;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds one wood and one core in StockCache while a wand maker configures a
+ * build. Abandoned holds expire through a timing wheel; createWand claims the
+ * hold and turns it into consumption when the wand is saved.
+ */
+public class ReservationService {
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+
+    private static final ReservationService INSTANCE = new ReservationService();
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final TimingWheel<Long> expiries =
+            new TimingWheel<>(TICK_MILLIS, WHEEL_SLOTS, this::expire, "reservation-expiry");
+
+    private ReservationService() {}
+
+    public static ReservationService getInstance() {
+        return INSTANCE;
+    }
+
+    // Null when either component has no unreserved stock left
+    public Reservation tryReserve(int woodId, int coreId, long ttlMillis) throws SQLException {
+        StockCache stock = StockCache.getInstance();
+        if (!stock.tryReserve("wood", woodId, 1)) {
+            return null;
+        }
+        if (!stock.tryReserve("core", coreId, 1)) {
+            stock.release("wood", woodId, 1);
+            return null;
+        }
+
+        long id = nextId.getAndIncrement();
+        Reservation reservation = new Reservation(id, woodId, coreId, System.currentTimeMillis() + ttlMillis);
+        Hold hold = new Hold(reservation);
+        synchronized (hold) {
+            holds.put(id, hold);
+            hold.timeout = expiries.schedule(id, ttlMillis);
+        }
+        return reservation;
+    }
+
+    // Keeps a hold alive while its dialog is still open; false if it already expired
+    public boolean extend(Reservation reservation, long ttlMillis) {
+        Hold hold = holds.get(reservation.getReservationId());
+        if (hold == null) {
+            return false;
+        }
+        synchronized (hold) {
+            if (!hold.timeout.cancel()) {
+                return false;   // expiring right now
+            }
+            reservation.setExpiresAt(System.currentTimeMillis() + ttlMillis);
+            hold.timeout = expiries.schedule(reservation.getReservationId(), ttlMillis);
+        }
+        return true;
+    }
+
+    public void release(Reservation reservation) throws SQLException {
+        Hold hold = claim(reservation);
+        if (hold != null) {
+            returnStock(hold.reservation);
+        }
+    }
+
+    public boolean isActive(Reservation reservation) {
+        return holds.containsKey(reservation.getReservationId());
+    }
+
+    // Takes the hold out of circulation so neither expiry nor another caller can use it
+    Hold claim(Reservation reservation) {
+        Hold hold = holds.remove(reservation.getReservationId());
+        if (hold != null) {
+            synchronized (hold) {
+                hold.timeout.cancel();
+            }
+        }
+        return hold;
+    }
+
+    // Gives back a claimed hold whose build failed
+    void returnStock(Reservation reservation) throws SQLException {
+        StockCache.getInstance().release("wood", reservation.getWoodId(), 1);
+        StockCache.getInstance().release("core", reservation.getCoreId(), 1);
+    }
+
+    private void expire(Long reservationId) {
+        Hold hold = holds.remove(reservationId);
+        if (hold == null) {
+            return;
+        }
+        try {
+            returnStock(hold.reservation);
+        } catch (SQLException e) {
+            System.err.println("Failed to release expired reservation " + reservationId + ": " + e.getMessage());
+        }
+    }
+
+    static class Hold {
+        private final Reservation reservation;
+        private TimingWheel.Timeout<Long> timeout;
+
+        Hold(Reservation reservation) {
+            this.reservation = reservation;
+        }
+    }
+}
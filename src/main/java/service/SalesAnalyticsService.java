@@ -0,0 +1,288 @@
+package service;
+
+import db.DatabaseConnection;
+import model.SalesAggregate;
+import model.SalesDimension;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Group-by analytics over a columnar, dictionary-encoded snapshot of all sales.
+ * The snapshot is read once and then every breakdown (any mix of dimensions) is
+ * computed in memory with a fork/join pool, without touching the database.
+ */
+public class SalesAnalyticsService {
+    private static final SalesAnalyticsService INSTANCE = new SalesAnalyticsService();
+    private static final int DENSE_GROUP_LIMIT = 1 << 16;
+    private static final int MIN_ROWS_PER_TASK = 1 << 14;
+
+    private final Object loadLock = new Object();
+    private volatile SalesSnapshot snapshot;
+    // Bumped by every invalidation, so a load that raced one is used once but not kept; guarded by this
+    private long generation;
+
+    private SalesAnalyticsService() {}
+
+    public static SalesAnalyticsService getInstance() {
+        return INSTANCE;
+    }
+
+    // Sales, wand or customer changes; the sales dimensions come from all three
+    public synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    // Groups are ordered by revenue, highest first
+    public List<SalesAggregate> aggregate(SalesDimension... dimensions) throws SQLException {
+        SalesSnapshot sales = getSnapshot();
+
+        int[] radix = new int[dimensions.length];
+        long groups = 1;
+        for (int d = 0; d < dimensions.length; d++) {
+            radix[d] = Math.max(1, sales.dictionaries[dimensions[d].ordinal()].length);
+            groups *= radix[d];
+        }
+
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, sales.rows / (parallelism * 4 + 1));
+        GroupTotals totals = ForkJoinPool.commonPool().invoke(
+                new AggregateTask(sales, dimensions, radix, groups, 0, sales.rows, rowsPerTask));
+
+        List<SalesAggregate> result = new ArrayList<>();
+        totals.forEach((key, units, revenue) -> {
+            Map<SalesDimension, String> group = new EnumMap<>(SalesDimension.class);
+            long rest = key;
+            for (int d = dimensions.length - 1; d >= 0; d--) {
+                int code = (int) (rest % radix[d]);
+                rest /= radix[d];
+                group.put(dimensions[d], sales.dictionaries[dimensions[d].ordinal()][code]);
+            }
+            result.add(new SalesAggregate(group, units, revenue));
+        });
+        result.sort(Comparator.comparingDouble(SalesAggregate::getRevenue).reversed());
+        return result;
+    }
+
+    private SalesSnapshot getSnapshot() throws SQLException {
+        SalesSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            long started;
+            synchronized (this) {
+                if (snapshot != null) {
+                    return snapshot;
+                }
+                started = generation;
+            }
+            SalesSnapshot loaded = SalesSnapshot.load();
+            synchronized (this) {
+                if (generation == started) {
+                    snapshot = loaded;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    private static class SalesSnapshot {
+        private int rows;
+        private final int[][] codes = new int[SalesDimension.values().length][];
+        private final String[][] dictionaries = new String[SalesDimension.values().length][];
+        private double[] prices;
+
+        static SalesSnapshot load() throws SQLException {
+            String countSql = "SELECT COUNT(*) FROM sales";
+            String sql = "SELECT s.sale_price, s.payment_method, substr(s.sale_date, 1, 7) AS month, " +
+                    "wt.name AS wood_name, co.material AS core_material, c.house, c.species " +
+                    "FROM sales s " +
+                    "JOIN wands w ON s.wand_id = w.wand_id " +
+                    "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+                    "JOIN cores co ON w.core_id = co.core_id " +
+                    "JOIN customers c ON s.customer_id = c.customer_id";
+
+            SalesSnapshot snapshot = new SalesSnapshot();
+            List<Map<String, Integer>> encoders = new ArrayList<>();
+            for (int d = 0; d < SalesDimension.values().length; d++) {
+                encoders.add(new LinkedHashMap<>());
+            }
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                // Both reads see the same data when they run in one transaction
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    int capacity;
+                    try (ResultSet rs = stmt.executeQuery(countSql)) {
+                        capacity = rs.next() ? rs.getInt(1) : 0;
+                    }
+
+                    snapshot.prices = new double[capacity];
+                    for (int d = 0; d < snapshot.codes.length; d++) {
+                        snapshot.codes[d] = new int[capacity];
+                    }
+
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        int row = 0;
+                        while (rs.next() && row < capacity) {
+                            snapshot.prices[row] = rs.getDouble("sale_price");
+                            snapshot.encode(encoders, SalesDimension.WOOD, row, rs.getString("wood_name"));
+                            snapshot.encode(encoders, SalesDimension.CORE, row, rs.getString("core_material"));
+                            snapshot.encode(encoders, SalesDimension.HOUSE, row, rs.getString("house"));
+                            snapshot.encode(encoders, SalesDimension.SPECIES, row, rs.getString("species"));
+                            snapshot.encode(encoders, SalesDimension.MONTH, row, rs.getString("month"));
+                            snapshot.encode(encoders, SalesDimension.PAYMENT_METHOD, row, rs.getString("payment_method"));
+                            row++;
+                        }
+                        snapshot.rows = row;
+                    }
+                } finally {
+                    conn.rollback();
+                }
+            }
+
+            for (SalesDimension dimension : SalesDimension.values()) {
+                snapshot.dictionaries[dimension.ordinal()] =
+                        encoders.get(dimension.ordinal()).keySet().toArray(new String[0]);
+            }
+            return snapshot;
+        }
+
+        private void encode(List<Map<String, Integer>> encoders, SalesDimension dimension, int row, String value) {
+            Map<String, Integer> encoder = encoders.get(dimension.ordinal());
+            String key = value == null ? "unknown" : value;
+            Integer code = encoder.get(key);
+            if (code == null) {
+                code = encoder.size();
+                encoder.put(key, code);
+            }
+            codes[dimension.ordinal()][row] = code;
+        }
+    }
+
+    private static class AggregateTask extends RecursiveTask<GroupTotals> {
+        private final SalesSnapshot sales;
+        private final SalesDimension[] dimensions;
+        private final int[] radix;
+        private final long groups;
+        private final int from;
+        private final int to;
+        private final int rowsPerTask;
+
+        AggregateTask(SalesSnapshot sales, SalesDimension[] dimensions, int[] radix, long groups,
+                      int from, int to, int rowsPerTask) {
+            this.sales = sales;
+            this.dimensions = dimensions;
+            this.radix = radix;
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected GroupTotals compute() {
+            if (to - from <= rowsPerTask) {
+                return aggregateRange();
+            }
+
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(sales, dimensions, radix, groups, from, middle, rowsPerTask);
+            AggregateTask right = new AggregateTask(sales, dimensions, radix, groups, middle, to, rowsPerTask);
+            left.fork();
+            GroupTotals rightTotals = right.compute();
+            return left.join().merge(rightTotals);
+        }
+
+        private GroupTotals aggregateRange() {
+            GroupTotals totals = groups <= DENSE_GROUP_LIMIT
+                    ? new DenseTotals((int) groups)
+                    : new SparseTotals();
+
+            int[][] columns = new int[dimensions.length][];
+            for (int d = 0; d < dimensions.length; d++) {
+                columns[d] = sales.codes[dimensions[d].ordinal()];
+            }
+
+            for (int row = from; row < to; row++) {
+                long key = 0;
+                for (int d = 0; d < columns.length; d++) {
+                    key = key * radix[d] + columns[d][row];
+                }
+                totals.add(key, 1, sales.prices[row]);
+            }
+            return totals;
+        }
+    }
+
+    private interface GroupVisitor {
+        void visit(long key, long units, double revenue);
+    }
+
+    private interface GroupTotals {
+        void add(long key, long units, double revenue);
+
+        GroupTotals merge(GroupTotals other);
+
+        void forEach(GroupVisitor visitor);
+    }
+
+    private static class DenseTotals implements GroupTotals {
+        private final long[] units;
+        private final double[] revenue;
+
+        DenseTotals(int groups) {
+            units = new long[groups];
+            revenue = new double[groups];
+        }
+
+        @Override
+        public void add(long key, long count, double amount) {
+            units[(int) key] += count;
+            revenue[(int) key] += amount;
+        }
+
+        @Override
+        public GroupTotals merge(GroupTotals other) {
+            other.forEach(this::add);
+            return this;
+        }
+
+        @Override
+        public void forEach(GroupVisitor visitor) {
+            for (int key = 0; key < units.length; key++) {
+                if (units[key] > 0) {
+                    visitor.visit(key, units[key], revenue[key]);
+                }
+            }
+        }
+    }
+
+    private static class SparseTotals implements GroupTotals {
+        private final Map<Long, double[]> totals = new HashMap<>();
+
+        @Override
+        public void add(long key, long count, double amount) {
+            double[] group = totals.computeIfAbsent(key, k -> new double[2]);
+            group[0] += count;
+            group[1] += amount;
+        }
+
+        @Override
+        public GroupTotals merge(GroupTotals other) {
+            other.forEach(this::add);
+            return this;
+        }
+
+        @Override
+        public void forEach(GroupVisitor visitor) {
+            for (Map.Entry<Long, double[]> entry : totals.entrySet()) {
+                visitor.visit(entry.getKey(), (long) entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package service;
+
+import db.DatabaseConnection;
+import model.SalesStatistics;
+import util.HyperLogLog;
+import util.KllSketch;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Distinct customer counts and sale price percentiles per wood and per month,
+ * kept in mergeable sketches. The sketches are built from the sales history
+ * once and then updated by every recorded purchase, so reading them never
+ * scans the sales table.
+ */
+public class SalesStatisticsService {
+    private static final SalesStatisticsService INSTANCE = new SalesStatisticsService();
+
+    private Map<Integer, SalesSketch> byWood;
+    private Map<Integer, String> woodNames;
+    private TreeMap<String, SalesSketch> byMonth;
+
+    private SalesStatisticsService() {}
+
+    public static SalesStatisticsService getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized List<SalesStatistics> getWoodStatistics() throws SQLException {
+        ensureLoaded();
+        List<SalesStatistics> result = new ArrayList<>();
+        for (Map.Entry<Integer, SalesSketch> entry : byWood.entrySet()) {
+            result.add(entry.getValue().toStatistics(woodNames.get(entry.getKey())));
+        }
+        result.sort(Comparator.comparingLong(SalesStatistics::getSales).reversed());
+        return result;
+    }
+
+    public synchronized List<SalesStatistics> getMonthlyStatistics() throws SQLException {
+        ensureLoaded();
+        List<SalesStatistics> result = new ArrayList<>();
+        for (Map.Entry<String, SalesSketch> entry : byMonth.entrySet()) {
+            result.add(entry.getValue().toStatistics(entry.getKey()));
+        }
+        return result;
+    }
+
+    // Months are "yyyy-MM" and both ends are inclusive
+    public synchronized SalesStatistics getStatistics(String fromMonth, String toMonth) throws SQLException {
+        ensureLoaded();
+        SalesSketch merged = new SalesSketch();
+        for (SalesSketch month : byMonth.subMap(fromMonth, true, toMonth, true).values()) {
+            merged.merge(month);
+        }
+        return merged.toStatistics(fromMonth + " to " + toMonth);
+    }
+
+    // Called after a sale is committed; a no-op until the sketches are first used
+    public synchronized void recordSale(Connection conn, int wandId, int customerId,
+                                        String saleDate, double salePrice) throws SQLException {
+        if (byWood == null) {
+            return;
+        }
+        String sql = "SELECT w.wood_id, wt.name FROM wands w " +
+                "JOIN wood_types wt ON w.wood_id = wt.wood_id WHERE w.wand_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, wandId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    add(rs.getInt("wood_id"), rs.getString("name"), saleDate, customerId, salePrice);
+                }
+            }
+        }
+    }
+
+    public synchronized void rebuild() throws SQLException {
+        invalidate();
+        ensureLoaded();
+    }
+
+    // Drops the sketches, e.g. after a database reset; they are rebuilt from the sales on next use
+    public synchronized void invalidate() {
+        byWood = null;
+        woodNames = null;
+        byMonth = null;
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (byWood != null) {
+            return;
+        }
+
+        byWood = new HashMap<>();
+        woodNames = new HashMap<>();
+        byMonth = new TreeMap<>();
+
+        String sql = "SELECT w.wood_id, wt.name, s.sale_date, s.customer_id, s.sale_price " +
+                "FROM sales s " +
+                "JOIN wands w ON s.wand_id = w.wand_id " +
+                "JOIN wood_types wt ON w.wood_id = wt.wood_id";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                add(rs.getInt("wood_id"), rs.getString("name"), rs.getString("sale_date"),
+                        rs.getInt("customer_id"), rs.getDouble("sale_price"));
+            }
+        } catch (SQLException e) {
+            byWood = null;
+            throw e;
+        }
+    }
+
+    private void add(int woodId, String woodName, String saleDate, int customerId, double salePrice) {
+        woodNames.put(woodId, woodName);
+        byWood.computeIfAbsent(woodId, id -> new SalesSketch()).add(customerId, salePrice);
+        if (saleDate != null && saleDate.length() >= 7) {
+            byMonth.computeIfAbsent(saleDate.substring(0, 7), month -> new SalesSketch()).add(customerId, salePrice);
+        }
+    }
+
+    private static class SalesSketch {
+        private final HyperLogLog customers = new HyperLogLog();
+        private final KllSketch prices = new KllSketch();
+
+        void add(int customerId, double salePrice) {
+            customers.add(customerId);
+            prices.update(salePrice);
+        }
+
+        void merge(SalesSketch other) {
+            customers.merge(other.customers);
+            prices.merge(other.prices);
+        }
+
+        SalesStatistics toStatistics(String label) {
+            // A sketch never counts more distinct customers than it has seen sales
+            long distinct = Math.min(customers.estimate(), prices.getCount());
+            return new SalesStatistics(label, prices.getCount(), distinct,
+                    prices.getMin(), prices.quantile(0.5), prices.quantile(0.9),
+                    prices.quantile(0.99), prices.getMax());
+        }
+    }
+}
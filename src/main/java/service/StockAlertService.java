@@ -0,0 +1,159 @@
+package service;
+
+import db.DatabaseConnection;
+import model.StockAlert;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Low-stock alerts. Thresholds and material names are read once; after that
+ * each change reported by StockCache is checked against its own material's
+ * threshold only, without queries or scans. An alert is raised once when a
+ * material drops to its reorder point and cleared when it is restocked.
+ */
+public class StockAlertService {
+    public static final int DEFAULT_THRESHOLD = 3;
+
+    private static final StockAlertService INSTANCE = new StockAlertService();
+
+    public interface AlertListener {
+        void alertRaised(StockAlert alert);
+
+        void alertCleared(StockAlert alert);
+    }
+
+    private final Map<String, Integer> thresholds = new ConcurrentHashMap<>();
+    private final Map<String, String> materialNames = new ConcurrentHashMap<>();
+    private final Map<String, StockAlert> activeAlerts = new ConcurrentHashMap<>();
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean started;
+
+    private StockAlertService() {
+        StockCache.getInstance().addListener(this::evaluate);
+    }
+
+    public static StockAlertService getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Loads thresholds and raises alerts for the current stock; later changes arrive from StockCache
+    public synchronized void start() throws SQLException {
+        if (started) {
+            return;
+        }
+        String thresholdSql = "SELECT item_type, material_id, threshold FROM reorder_thresholds";
+        String stockSql = "SELECT i.item_type, i.material_id, i.quantity, " +
+                "CASE WHEN i.item_type = 'wood' THEN w.name ELSE c.material END AS material_name " +
+                "FROM component_inventory i " +
+                "LEFT JOIN wood_types w ON i.item_type = 'wood' AND i.material_id = w.wood_id " +
+                "LEFT JOIN cores c ON i.item_type = 'core' AND i.material_id = c.core_id";
+
+        List<Object[]> stock = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(thresholdSql)) {
+                while (rs.next()) {
+                    thresholds.put(key(rs.getString("item_type"), rs.getInt("material_id")), rs.getInt("threshold"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(stockSql)) {
+                while (rs.next()) {
+                    String itemType = rs.getString("item_type");
+                    int materialId = rs.getInt("material_id");
+                    if (rs.getString("material_name") != null) {
+                        materialNames.put(key(itemType, materialId), rs.getString("material_name"));
+                    }
+                    stock.add(new Object[]{itemType, materialId, rs.getInt("quantity")});
+                }
+            }
+        }
+
+        started = true;
+        for (Object[] row : stock) {
+            evaluate((String) row[0], (int) row[1], (int) row[2]);
+        }
+    }
+
+    // After a database reset: drop everything and load again
+    public synchronized void restart() throws SQLException {
+        started = false;
+        thresholds.clear();
+        materialNames.clear();
+        activeAlerts.clear();
+        start();
+    }
+
+    public List<StockAlert> getActiveAlerts() {
+        return new ArrayList<>(activeAlerts.values());
+    }
+
+    public int getThreshold(String itemType, int materialId) {
+        return thresholds.getOrDefault(key(itemType, materialId), DEFAULT_THRESHOLD);
+    }
+
+    public void setThreshold(String itemType, int materialId, int threshold) throws SQLException {
+        String sql = "INSERT INTO reorder_thresholds (item_type, material_id, threshold) VALUES (?, ?, ?) " +
+                "ON CONFLICT (item_type, material_id) DO UPDATE SET threshold = excluded.threshold";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, itemType);
+            stmt.setInt(2, materialId);
+            stmt.setInt(3, threshold);
+            stmt.executeUpdate();
+        }
+        thresholds.put(key(itemType, materialId), threshold);
+        evaluate(itemType, materialId, StockCache.getInstance().getQuantity(itemType, materialId));
+    }
+
+    private void evaluate(String itemType, int materialId, int quantity) {
+        if (!started) {
+            return;
+        }
+        String key = key(itemType, materialId);
+        int threshold = thresholds.getOrDefault(key, DEFAULT_THRESHOLD);
+
+        if (quantity <= threshold) {
+            StockAlert alert = new StockAlert(itemType, materialId,
+                    materialNames.getOrDefault(key, itemType + " #" + materialId),
+                    quantity, threshold, LocalDateTime.now());
+            StockAlert existing = activeAlerts.putIfAbsent(key, alert);
+            if (existing != null) {
+                // Already reported; keep the figures current without alerting again
+                existing.setQuantity(quantity);
+                existing.setThreshold(threshold);
+                return;
+            }
+            System.err.println("Low stock: " + alert);
+            for (AlertListener listener : listeners) {
+                listener.alertRaised(alert);
+            }
+        } else {
+            StockAlert cleared = activeAlerts.remove(key);
+            if (cleared != null) {
+                cleared.setQuantity(quantity);
+                System.out.println("Stock restored: " + cleared);
+                for (AlertListener listener : listeners) {
+                    listener.alertCleared(cleared);
+                }
+            }
+        }
+    }
+
+    private static String key(String itemType, int materialId) {
+        return itemType + ":" + materialId;
+    }
+}
@@ -0,0 +1,492 @@
+package service;
+
+import db.DatabaseConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory component stock. Each (item_type, material_id) has one AtomicLong
+ * packing the quantity on hand (high 32 bits) and the quantity reserved (low
+ * 32 bits), so reads never lock and reservations are a single compare-and-set.
+ *
+ * Changes made through {@link #adjust} are write-behind: they are appended to a
+ * journal file (fsynced) and flushed to component_inventory in batches. Each
+ * batch is recorded in stock_flush_batches in the same transaction, so a
+ * journal left behind by a crash is replayed exactly once. A delta the
+ * database refuses (another terminal took the stock first) is moved to a
+ * rejected file and taken back out of the counters. Transactional paths
+ * (wand production, deliveries) write the database themselves and report the
+ * committed change through {@link #applyCommitted}, together with the
+ * component_inventory version they committed, so a change the load already
+ * read is not counted twice.
+ */
+public class StockCache {
+    private static final StockCache INSTANCE = new StockCache();
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final String JOURNAL_SUFFIX = ".stock-journal";
+    private static final String REJECTED_SUFFIX = ".stock-rejected";
+    private static final int SQLITE_CONSTRAINT = 19;
+    private static final int SQLITE_MISMATCH = 20;
+
+    public interface StockListener {
+        void stockChanged(String itemType, int materialId, int quantity);
+    }
+
+    private final Map<String, AtomicLong> stock = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pending = new HashMap<>();   // guarded by journalLock
+    private final Object journalLock = new Object();
+    private volatile boolean loaded;
+    // component_inventory version the counters were loaded at; written before loaded is set
+    private volatile long loadedVersion;
+    private FileChannel journal;
+    private ScheduledExecutorService flusher;
+    private final List<StockListener> listeners = new CopyOnWriteArrayList<>();
+
+    private StockCache() {}
+
+    public static StockCache getInstance() {
+        return INSTANCE;
+    }
+
+    // Told about every change of the quantity on hand, with the new quantity
+    public void addListener(StockListener listener) {
+        listeners.add(listener);
+    }
+
+    public int getQuantity(String itemType, int materialId) throws SQLException {
+        return onHand(entry(itemType, materialId).get());
+    }
+
+    // On hand minus what is reserved by builds in progress
+    public int getAvailable(String itemType, int materialId) throws SQLException {
+        long value = entry(itemType, materialId).get();
+        return onHand(value) - reserved(value);
+    }
+
+    public boolean tryReserve(String itemType, int materialId, int quantity) throws SQLException {
+        AtomicLong counter = entry(itemType, materialId);
+        while (true) {
+            long value = counter.get();
+            if (onHand(value) - reserved(value) < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(value, pack(onHand(value), reserved(value) + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    public void release(String itemType, int materialId, int quantity) throws SQLException {
+        AtomicLong counter = entry(itemType, materialId);
+        while (true) {
+            long value = counter.get();
+            int reserved = Math.max(0, reserved(value) - quantity);
+            if (counter.compareAndSet(value, pack(onHand(value), reserved))) {
+                return;
+            }
+        }
+    }
+
+    // A committed consumption of units that were reserved beforehand; version is from inventoryVersion()
+    public void consumeReserved(String itemType, int materialId, int quantity, long version) {
+        if (!awaitLoad()) {
+            return;
+        }
+        int consumed = version > loadedVersion ? quantity : 0;
+        AtomicLong counter = stock.computeIfAbsent(key(itemType, materialId), k -> new AtomicLong());
+        while (true) {
+            long value = counter.get();
+            long next = pack(onHand(value) - consumed, Math.max(0, reserved(value) - quantity));
+            if (counter.compareAndSet(value, next)) {
+                notifyListeners(itemType, materialId, onHand(next));
+                return;
+            }
+        }
+    }
+
+    // Write-behind change; refused if it would dip into reserved or negative stock
+    public boolean adjust(String itemType, int materialId, int delta) throws SQLException {
+        AtomicLong counter = entry(itemType, materialId);
+        String key = key(itemType, materialId);
+        synchronized (journalLock) {
+            long value;
+            do {
+                value = counter.get();
+                if (onHand(value) + delta < reserved(value)) {
+                    return false;
+                }
+            } while (!counter.compareAndSet(value, pack(onHand(value) + delta, reserved(value))));
+
+            try {
+                appendToJournal(key + "," + delta + "\n");
+            } catch (IOException e) {
+                counter.addAndGet(-((long) delta << 32));
+                throw new SQLException("Failed to write stock journal: " + e.getMessage(), e);
+            } catch (SQLException e) {
+                counter.addAndGet(-((long) delta << 32));
+                throw e;
+            }
+            pending.merge(key, delta, Integer::sum);
+        }
+        notifyListeners(itemType, materialId, onHand(counter.get()));
+        return true;
+    }
+
+    private void notifyListeners(String itemType, int materialId, int quantity) {
+        for (StockListener listener : listeners) {
+            listener.stockChanged(itemType, materialId, quantity);
+        }
+    }
+
+    // For changes already committed to component_inventory by a transaction; version is from inventoryVersion()
+    public void applyCommitted(String itemType, int materialId, int delta, long version) {
+        if (!awaitLoad()) {
+            return;
+        }
+        AtomicLong counter = stock.computeIfAbsent(key(itemType, materialId), k -> new AtomicLong());
+        // Listeners are told even when the load already counted it, the change is still news to them
+        long value = version > loadedVersion ? counter.addAndGet((long) delta << 32) : counter.get();
+        notifyListeners(itemType, materialId, onHand(value));
+    }
+
+    // The component_inventory version a transaction has written, read inside it just before commit
+    public static long inventoryVersion(Connection conn) throws SQLException {
+        String sql = "SELECT version FROM table_versions WHERE table_name = 'component_inventory'";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Waits out a load in progress; false when nothing is loaded, as the next load reads the database anyway
+    private boolean awaitLoad() {
+        if (loaded) {
+            return true;
+        }
+        synchronized (journalLock) {
+            return loaded;
+        }
+    }
+
+    // Writes all pending adjustments to the database now
+    public void flush() throws SQLException {
+        if (!loaded) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (!pending.isEmpty()) {
+                try {
+                    rotateJournal();
+                } catch (IOException e) {
+                    throw new SQLException("Failed to rotate stock journal: " + e.getMessage(), e);
+                }
+                pending.clear();
+            }
+        }
+        applyJournalBatches();
+    }
+
+    // After the database was reset: forget pending adjustments and reload on next use
+    public void reset() {
+        synchronized (journalLock) {
+            pending.clear();
+            closeJournal();
+            for (File file : journalFiles()) {
+                file.delete();
+            }
+            stock.clear();
+            loaded = false;
+        }
+    }
+
+    private AtomicLong entry(String itemType, int materialId) throws SQLException {
+        ensureLoaded();
+        return stock.computeIfAbsent(key(itemType, materialId), k -> new AtomicLong());
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (loaded) {
+                return;
+            }
+            // A journal left by a previous run holds adjustments the database has not seen yet
+            try {
+                if (activeJournalFile().length() > 0) {
+                    closeJournal();
+                    rotateJournal();
+                }
+            } catch (IOException e) {
+                throw new SQLException("Failed to recover stock journal: " + e.getMessage(), e);
+            }
+
+            // Holding the flusher's lock keeps the batches from being applied between the two reads below
+            synchronized (this) {
+                applyJournalBatches();
+
+                stock.clear();
+                String sql = "SELECT item_type, material_id, quantity FROM component_inventory";
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    // The rows and their version have to come from the same read
+                    conn.setAutoCommit(false);
+                    try (Statement stmt = conn.createStatement()) {
+                        try (ResultSet rs = stmt.executeQuery(sql)) {
+                            while (rs.next()) {
+                                stock.put(key(rs.getString("item_type"), rs.getInt("material_id")),
+                                        new AtomicLong(pack(rs.getInt("quantity"), 0)));
+                            }
+                        }
+                        loadedVersion = inventoryVersion(conn);
+                    } finally {
+                        conn.rollback();
+                    }
+                }
+
+                // Batches that could not be applied yet are still owed to the database
+                for (File batch : closedBatches()) {
+                    for (Map.Entry<String, Integer> delta : readBatch(batch).entrySet()) {
+                        stock.computeIfAbsent(delta.getKey(), k -> new AtomicLong())
+                                .addAndGet((long) delta.getValue() << 32);
+                    }
+                }
+                loaded = true;
+            }
+            startFlusher();
+        }
+    }
+
+    private synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (SQLException e) {
+                System.err.println("Stock flush failed, will retry: " + e.getMessage());
+            }
+        }, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Applies every closed journal batch; a batch already recorded in stock_flush_batches is just deleted.
+    // A batch that fails for another reason stays for the next flush, without holding up later ones.
+    private synchronized void applyJournalBatches() {
+        for (File batch : closedBatches()) {
+            try {
+                applyBatch(batch);
+            } catch (SQLException e) {
+                System.err.println("Stock journal " + batch.getName() + " not applied, will retry: " + e.getMessage());
+            }
+        }
+    }
+
+    private void applyBatch(File batch) throws SQLException {
+        String batchId = batch.getName().substring(batch.getName().lastIndexOf('.') + 1);
+        Map<String, Integer> deltas = readBatch(batch);
+        Map<String, Integer> rejected = new LinkedHashMap<>();
+        List<String> reasons = new ArrayList<>();
+
+        InventoryService inventoryService = new InventoryService();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                boolean fresh;
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT OR IGNORE INTO stock_flush_batches (batch_id) VALUES (?)")) {
+                    stmt.setString(1, batchId);
+                    fresh = stmt.executeUpdate() > 0;
+                }
+                if (fresh) {
+                    // Each delta gets a savepoint, so one that the database refuses does not sink the others
+                    for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            String[] parts = delta.getKey().split(":");
+                            if (!inventoryService.updateStock(parts[0], Integer.parseInt(parts[1]), delta.getValue(),
+                                    "adjustment", null, conn)) {
+                                throw new IllegalStateException("no inventory row to take stock from");
+                            }
+                            conn.releaseSavepoint(savepoint);
+                        } catch (SQLException | RuntimeException e) {
+                            if (e instanceof SQLException && !isPermanent((SQLException) e)) {
+                                throw e;
+                            }
+                            conn.rollback(savepoint);
+                            rejected.put(delta.getKey(), delta.getValue());
+                            reasons.add(delta.getKey() + " " + delta.getValue() + ": " + e.getMessage());
+                        }
+                    }
+                }
+                if (!rejected.isEmpty()) {
+                    writeRejected(batch, batchId, rejected);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        batch.delete();
+
+        if (!rejected.isEmpty()) {
+            System.err.println("Stock journal " + batch.getName() + ": rejected " + String.join("; ", reasons));
+            if (loaded) {
+                // The counters accepted these when adjust() was called, the database never will
+                for (Map.Entry<String, Integer> delta : rejected.entrySet()) {
+                    AtomicLong counter = stock.get(delta.getKey());
+                    if (counter != null) {
+                        long value = counter.addAndGet(-((long) delta.getValue() << 32));
+                        String[] parts = delta.getKey().split(":");
+                        try {
+                            notifyListeners(parts[0], Integer.parseInt(parts[1]), onHand(value));
+                        } catch (RuntimeException e) {
+                            // a malformed key has no listeners to tell
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Errors that retrying the same delta cannot fix, as opposed to e.g. a busy database
+    private static boolean isPermanent(SQLException e) {
+        int code = e.getErrorCode() & 0xFF;
+        return code == SQLITE_CONSTRAINT || code == SQLITE_MISMATCH;
+    }
+
+    // Same line format as the journal; kept next to it for someone to look at
+    private void writeRejected(File batch, String batchId, Map<String, Integer> rejected) throws SQLException {
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, Integer> delta : rejected.entrySet()) {
+            lines.append(delta.getKey()).append(',').append(delta.getValue()).append('\n');
+        }
+        File target = new File(DatabaseConnection.getDatabasePath() + REJECTED_SUFFIX + "." + batchId);
+        try {
+            Files.write(target.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new SQLException("Failed to write rejected stock batch " + target + ": " + e.getMessage(), e);
+        }
+    }
+
+    private List<File> closedBatches() {
+        List<File> batches = journalFiles();
+        try {
+            batches.remove(activeJournalFile());
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+        batches.sort(Comparator.comparing(File::getName));
+        return batches;
+    }
+
+    private Map<String, Integer> readBatch(File batch) throws SQLException {
+        Map<String, Integer> deltas = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(batch.toPath(), StandardCharsets.UTF_8)) {
+                int comma = line.lastIndexOf(',');
+                if (comma < 0) {
+                    continue;   // torn final line from a crash mid-write
+                }
+                try {
+                    deltas.merge(line.substring(0, comma), Integer.parseInt(line.substring(comma + 1)), Integer::sum);
+                } catch (NumberFormatException e) {
+                    // same as above
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read stock journal " + batch + ": " + e.getMessage(), e);
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    private void appendToJournal(String line) throws IOException, SQLException {
+        if (journal == null) {
+            journal = FileChannel.open(activeJournalFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+    }
+
+    // Closes the active journal under a unique batch name; callers hold journalLock
+    private void rotateJournal() throws IOException, SQLException {
+        closeJournal();
+        File active = activeJournalFile();
+        String batchId = System.currentTimeMillis() + "-" + UUID.randomUUID().toString().replace("-", "");
+        File batch = new File(active.getPath() + "." + batchId);
+        Files.move(active.toPath(), batch.toPath());
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close stock journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    private List<File> journalFiles() {
+        List<File> files = new ArrayList<>();
+        try {
+            File active = activeJournalFile();
+            File directory = active.getAbsoluteFile().getParentFile();
+            File[] matches = directory.listFiles((dir, name) -> name.startsWith(active.getName()));
+            if (matches != null) {
+                for (File match : matches) {
+                    files.add(match.getName().equals(active.getName()) ? active : match);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to locate stock journal: " + e.getMessage());
+        }
+        return files;
+    }
+
+    private static File activeJournalFile() throws SQLException {
+        return new File(DatabaseConnection.getDatabasePath() + JOURNAL_SUFFIX);
+    }
+
+    private static String key(String itemType, int materialId) {
+        return itemType + ":" + materialId;
+    }
+
+    private static long pack(int onHand, int reserved) {
+        return ((long) onHand << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int onHand(long value) {
+        return (int) (value >> 32);
+    }
+
+    private static int reserved(long value) {
+        return (int) value;
+    }
+}
@@ -0,0 +1,367 @@
+package service;
+
+import db.DatabaseConnection;
+import model.AllocationCriteria;
+import model.Wand;
+import model.WandAllocation;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-stock wands grouped by wood, core and whole-inch length, each group a
+ * concurrent sorted set of wand ids. allocateNext() takes the oldest matching
+ * wand by removing it from its set. Only one caller can win that removal, so
+ * clerks never block each other. The winner then moves the wand from
+ * in_stock to reserved with a conditional UPDATE and records who holds it
+ * until when in wand_allocations. Only the holder can sell or release it, and
+ * a sweep puts expired ones back on the shelf. Every status change made
+ * through WandService, checkout or the planner is applied here as well.
+ */
+public class WandAllocationIndex {
+    public static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000;
+
+    private static final WandAllocationIndex INSTANCE = new WandAllocationIndex();
+    private static final long SWEEP_INTERVAL_MS = 60 * 1000;
+
+    private final Map<Bucket, ConcurrentSkipListSet<Integer>> buckets = new ConcurrentHashMap<>();
+    private final Map<Integer, Bucket> bucketOf = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private ScheduledExecutorService sweeper;
+
+    private WandAllocationIndex() {}
+
+    public static WandAllocationIndex getInstance() {
+        return INSTANCE;
+    }
+
+    // Loads the index and starts returning expired allocations to stock
+    public void start() throws SQLException {
+        ensureLoaded();
+        releaseExpired();
+        startSweeper();
+    }
+
+    // The wand now reserved for heldBy, or null when nothing in stock matches
+    public WandAllocation allocateNext(AllocationCriteria criteria, String heldBy, long ttlMillis)
+            throws SQLException {
+        ensureLoaded();
+        while (true) {
+            Integer best = null;
+            ConcurrentSkipListSet<Integer> source = null;
+            for (Map.Entry<Bucket, ConcurrentSkipListSet<Integer>> entry : candidates(criteria).entrySet()) {
+                Integer first = entry.getValue().ceiling(Integer.MIN_VALUE);
+                if (first != null && (best == null || first < best)) {
+                    best = first;
+                    source = entry.getValue();
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            if (!source.remove(best)) {
+                continue;   // another clerk took it first
+            }
+            Bucket bucket = bucketOf.remove(best);
+
+            try {
+                WandAllocation allocation = markReserved(best, heldBy, ttlMillis);
+                if (allocation != null) {
+                    WandService.wandsChanged(List.of(best));
+                    return allocation;
+                }
+                // Sold or edited behind the index's back; it stays out and the next one is tried
+            } catch (SQLException e) {
+                if (bucket != null) {
+                    add(best, bucket);
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Puts a wand back on the shelf; false if the allocation was already sold, released or expired
+    public boolean release(WandAllocation allocation) throws SQLException {
+        // An expired allocation is left to releaseExpired(), which puts the wand back just the same
+        String sql = "DELETE FROM wand_allocations WHERE wand_id = ? AND allocation_token = ? " +
+                "AND expires_at > datetime('now')";
+        return returnToStock(allocation.getWandId(), sql, allocation.getToken());
+    }
+
+    // Sweeps allocations past their expiry back into stock; returns how many were released
+    public int releaseExpired() throws SQLException {
+        String selectSql = "SELECT wand_id FROM wand_allocations WHERE expires_at <= datetime('now')";
+        String deleteSql = "DELETE FROM wand_allocations WHERE wand_id = ? AND expires_at <= datetime('now')";
+        List<Integer> expired = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(selectSql)) {
+            while (rs.next()) {
+                expired.add(rs.getInt("wand_id"));
+            }
+        }
+
+        int released = 0;
+        for (int wandId : expired) {
+            // Re-checked in the delete, as the holder may have sold or released it meanwhile
+            if (returnToStock(wandId, deleteSql, null)) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    // Unexpired allocations held by heldBy, oldest wand first
+    public List<WandAllocation> getAllocations(String heldBy) throws SQLException {
+        String sql = "SELECT wand_id, allocation_token, held_by, " +
+                "CAST(strftime('%s', expires_at) AS INTEGER) * 1000 AS expires_millis " +
+                "FROM wand_allocations WHERE held_by = ? AND expires_at > datetime('now') ORDER BY wand_id";
+        List<WandAllocation> allocations = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, heldBy);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    allocations.add(new WandAllocation(rs.getInt("wand_id"), rs.getString("allocation_token"),
+                            rs.getString("held_by"), rs.getLong("expires_millis")));
+                }
+            }
+        }
+        return allocations;
+    }
+
+    // Drops the allocation row with deleteSql (wand id, then the token if given) and re-shelves the wand
+    private boolean returnToStock(int wandId, String deleteSql, String token) throws SQLException {
+        String updateSql = "UPDATE wands SET status = 'in_stock' WHERE wand_id = ? AND status = 'reserved'";
+        String selectSql = "SELECT wood_id, core_id, length FROM wands WHERE wand_id = ?";
+        Bucket bucket = null;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                    stmt.setInt(1, wandId);
+                    if (token != null) {
+                        stmt.setString(2, token);
+                    }
+                    if (stmt.executeUpdate() == 0) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                boolean restocked;
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setInt(1, wandId);
+                    restocked = stmt.executeUpdate() > 0;
+                }
+                if (restocked) {
+                    try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                        stmt.setInt(1, wandId);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            if (rs.next()) {
+                                bucket = new Bucket(rs.getInt("wood_id"), rs.getInt("core_id"), rs.getDouble("length"));
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        if (bucket == null) {
+            return true;   // edited to another status meanwhile; the stale row is gone all the same
+        }
+        synchronized (this) {
+            if (loaded) {
+                add(wandId, bucket);
+            }
+        }
+        WandService.wandsChanged(List.of(wandId));
+        return true;
+    }
+
+    public int countAvailable(AllocationCriteria criteria) throws SQLException {
+        ensureLoaded();
+        int count = 0;
+        for (ConcurrentSkipListSet<Integer> wands : candidates(criteria).values()) {
+            count += wands.size();
+        }
+        return count;
+    }
+
+    // A committed insert or update of one wand
+    public synchronized void wandSaved(Wand wand) {
+        if (!loaded) {
+            return;
+        }
+        remove(wand.getId());
+        if ("in_stock".equals(wand.getStatus())) {
+            add(wand.getId(), new Bucket(wand.getWoodId(), wand.getCoreId(), wand.getLength()));
+        }
+    }
+
+    // Committed sales or deletions
+    public synchronized void wandsRemoved(Collection<Integer> wandIds) {
+        for (int wandId : wandIds) {
+            remove(wandId);
+        }
+    }
+
+    // For bulk changes whose ids are not at hand; the index reloads on next use
+    public synchronized void invalidate() {
+        loaded = false;
+        buckets.clear();
+        bucketOf.clear();
+    }
+
+    private Map<Bucket, ConcurrentSkipListSet<Integer>> candidates(AllocationCriteria criteria) {
+        if (criteria.getWoodId() != null && criteria.getCoreId() != null && criteria.getLengthInches() != null) {
+            Bucket bucket = new Bucket(criteria.getWoodId(), criteria.getCoreId(), criteria.getLengthInches());
+            ConcurrentSkipListSet<Integer> wands = buckets.get(bucket);
+            return wands == null ? Map.of() : Map.of(bucket, wands);
+        }
+        Map<Bucket, ConcurrentSkipListSet<Integer>> matching = new java.util.HashMap<>();
+        for (Map.Entry<Bucket, ConcurrentSkipListSet<Integer>> entry : buckets.entrySet()) {
+            if (entry.getKey().matches(criteria)) {
+                matching.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return matching;
+    }
+
+    // Null if the wand is no longer in stock
+    private WandAllocation markReserved(int wandId, String heldBy, long ttlMillis) throws SQLException {
+        String updateSql = "UPDATE wands SET status = 'reserved' WHERE wand_id = ? AND status = 'in_stock'";
+        String allocationSql = "INSERT OR REPLACE INTO wand_allocations " +
+                "(wand_id, allocation_token, held_by, expires_at) VALUES (?, ?, ?, datetime('now', ?))";
+        long ttlSeconds = Math.max(1, ttlMillis / 1000);
+        WandAllocation allocation = new WandAllocation(wandId, UUID.randomUUID().toString(), heldBy,
+                System.currentTimeMillis() + ttlSeconds * 1000);
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setInt(1, wandId);
+                    if (stmt.executeUpdate() == 0) {
+                        conn.rollback();
+                        return null;
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(allocationSql)) {
+                    stmt.setInt(1, wandId);
+                    stmt.setString(2, allocation.getToken());
+                    stmt.setString(3, heldBy);
+                    stmt.setString(4, "+" + ttlSeconds + " seconds");
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return allocation;
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "allocation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                releaseExpired();
+            } catch (SQLException e) {
+                System.err.println("Releasing expired wand allocations failed, will retry: " + e.getMessage());
+            }
+        }, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void add(int wandId, Bucket bucket) {
+        bucketOf.put(wandId, bucket);
+        buckets.computeIfAbsent(bucket, b -> new ConcurrentSkipListSet<>()).add(wandId);
+    }
+
+    private void remove(int wandId) {
+        Bucket bucket = bucketOf.remove(wandId);
+        if (bucket != null) {
+            ConcurrentSkipListSet<Integer> wands = buckets.get(bucket);
+            if (wands != null) {
+                wands.remove(wandId);
+            }
+        }
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            String sql = "SELECT wand_id, wood_id, core_id, length FROM wands WHERE status = 'in_stock'";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    add(rs.getInt("wand_id"),
+                            new Bucket(rs.getInt("wood_id"), rs.getInt("core_id"), rs.getDouble("length")));
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private static final class Bucket {
+        private final int woodId;
+        private final int coreId;
+        private final int inches;
+
+        Bucket(int woodId, int coreId, double length) {
+            this(woodId, coreId, (int) Math.floor(length));
+        }
+
+        Bucket(int woodId, int coreId, int inches) {
+            this.woodId = woodId;
+            this.coreId = coreId;
+            this.inches = inches;
+        }
+
+        boolean matches(AllocationCriteria criteria) {
+            return (criteria.getWoodId() == null || criteria.getWoodId() == woodId)
+                    && (criteria.getCoreId() == null || criteria.getCoreId() == coreId)
+                    && (criteria.getLengthInches() == null || criteria.getLengthInches() == inches);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            Bucket other = (Bucket) o;
+            return woodId == other.woodId && coreId == other.coreId && inches == other.inches;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(woodId, coreId, inches);
+        }
+    }
+}
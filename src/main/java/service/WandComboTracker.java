@@ -0,0 +1,119 @@
+package service;
+
+import db.DatabaseConnection;
+import util.CountMinSketch;
+import util.SpaceSaving;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Streaming heavy hitters over wood x core x length bucket. Space-Saving keeps
+ * the candidate top combinations and a Count-Min sketch tightens their upper
+ * bounds. Built from the sales history on first use, then fed by every
+ * recorded purchase.
+ */
+public class WandComboTracker {
+    private static final WandComboTracker INSTANCE = new WandComboTracker();
+    private static final int TRACKED_COMBINATIONS = 256;
+    private static final double SKETCH_EPSILON = 0.001;
+    private static final double SKETCH_DELTA = 0.001;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_EPSILON, SKETCH_DELTA);
+    private final SpaceSaving<String> topCombinations = new SpaceSaving<>(TRACKED_COMBINATIONS);
+    private boolean loaded;
+
+    private WandComboTracker() {}
+
+    public static WandComboTracker getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized List<Map<String, Object>> top(int k) throws SQLException {
+        ensureLoaded();
+        List<Map<String, Object>> result = new ArrayList<>();
+        int rank = 1;
+        for (SpaceSaving.Counter<String> counter : topCombinations.top(k)) {
+            String[] parts = counter.getKey().split("\\|", -1);
+            long upper = Math.min(counter.getCount(), sketch.estimate(counter.getKey()));
+            long lower = Math.max(0, counter.getCount() - counter.getError());
+
+            Map<String, Object> row = new HashMap<>();
+            row.put("rank", rank++);
+            row.put("wood_name", parts[0]);
+            row.put("core_material", parts[1]);
+            row.put("length_bucket", parts[2]);
+            row.put("estimated_sales", upper);
+            row.put("min_sales", Math.min(lower, upper));
+            row.put("max_sales", upper);
+            result.add(row);
+        }
+        return result;
+    }
+
+    // Called after a sale is committed; a no-op until the board is first used
+    public synchronized void recordSale(Connection conn, int wandId) throws SQLException {
+        if (!loaded) {
+            return;
+        }
+        String sql = "SELECT wt.name AS wood_name, c.material AS core_material, w.length " +
+                "FROM wands w " +
+                "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+                "JOIN cores c ON w.core_id = c.core_id " +
+                "WHERE w.wand_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, wandId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    add(rs.getString("wood_name"), rs.getString("core_material"), rs.getDouble("length"));
+                }
+            }
+        }
+    }
+
+    public synchronized void rebuild() throws SQLException {
+        invalidate();
+        ensureLoaded();
+    }
+
+    // Forgets the counts, e.g. after a database reset; they are rebuilt from the sales on next use
+    public synchronized void invalidate() {
+        loaded = false;
+        sketch.clear();
+        topCombinations.clear();
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        sketch.clear();
+        topCombinations.clear();
+
+        String sql = "SELECT wt.name AS wood_name, c.material AS core_material, w.length " +
+                "FROM sales s " +
+                "JOIN wands w ON s.wand_id = w.wand_id " +
+                "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+                "JOIN cores c ON w.core_id = c.core_id";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                add(rs.getString("wood_name"), rs.getString("core_material"), rs.getDouble("length"));
+            }
+        }
+        loaded = true;
+    }
+
+    private void add(String woodName, String coreMaterial, double length) {
+        String key = woodName + "|" + coreMaterial + "|" + lengthBucket(length);
+        sketch.add(key, 1);
+        topCombinations.add(key, 1);
+    }
+
+    // Whole-inch buckets, e.g. "11-12"
+    private static String lengthBucket(double length) {
+        int inches = (int) Math.floor(length);
+        return inches + "-" + (inches + 1);
+    }
+}
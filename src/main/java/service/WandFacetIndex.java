@@ -0,0 +1,431 @@
+package service;
+
+import db.DatabaseConnection;
+import model.FacetedSearchResult;
+import model.Wand;
+import model.WandFilter;
+import util.CompressedBitmap;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Faceted filtering over an in-memory snapshot of the wand catalog. Every
+ * categorical facet value has a compressed bitmap of catalog positions and the
+ * numeric attributes are kept as sorted arrays, so a combined filter is a few
+ * bitmap intersections. Single-wand writes are applied as deltas: the wand's
+ * old position is hidden and its current row is matched directly, until
+ * enough of them pile up that a rebuild is cheaper.
+ */
+public class WandFacetIndex {
+    public static final String FLEXIBILITY = "flexibility";
+    public static final String CONDITION = "condition";
+    public static final String STATUS = "status";
+    public static final String WOOD_RARITY = "wood_rarity";
+    public static final String CORE_POWER = "core_power";
+
+    private static final String[] FACETS = {FLEXIBILITY, CONDITION, STATUS, WOOD_RARITY, CORE_POWER};
+    private static final int MAX_CHANGED_WANDS = 500;
+    private static final String SELECT_ROWS = "SELECT w.*, wt.rarity AS wood_rarity, c.power_level AS core_power " +
+            "FROM wands w " +
+            "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+            "JOIN cores c ON w.core_id = c.core_id ";
+
+    private static final WandFacetIndex INSTANCE = new WandFacetIndex();
+
+    private final Object loadLock = new Object();
+    private volatile Snapshot snapshot;
+    // Bumped by every write, so a load that raced one is used once but not kept; guarded by this
+    private long generation;
+
+    private WandFacetIndex() {}
+
+    public static WandFacetIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    // Committed inserts, updates and deletions of the given wands
+    public synchronized void wandsChanged(Collection<Integer> wandIds) {
+        if (wandIds.isEmpty()) {
+            return;
+        }
+        generation++;
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        if (current.changed.size() + current.hidden.size() + wandIds.size() > MAX_CHANGED_WANDS) {
+            snapshot = null;
+            return;
+        }
+        // Rows are read under the lock, so the last delta applied is never older than an earlier one
+        try {
+            snapshot = current.with(wandIds, loadRows(wandIds));
+        } catch (SQLException e) {
+            snapshot = null;
+        }
+    }
+
+    public FacetedSearchResult search(WandFilter filter, int limit) throws SQLException {
+        Snapshot current = getSnapshot();
+        Base base = current.base;
+
+        Map<String, Set<String>> selected = new LinkedHashMap<>();
+        selected.put(FLEXIBILITY, filter.getFlexibilities());
+        selected.put(CONDITION, filter.getConditions());
+        selected.put(STATUS, filter.getStatuses());
+        selected.put(WOOD_RARITY, filter.getWoodRarities());
+        selected.put(CORE_POWER, toStrings(filter.getCorePowerLevels()));
+
+        Map<String, CompressedBitmap> facetFilters = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> facet : selected.entrySet()) {
+            facetFilters.put(facet.getKey(), base.union(facet.getKey(), facet.getValue()));
+        }
+
+        CompressedBitmap rangeFilter = intersect(
+                base.lengths.range(filter.getMinLength(), filter.getMaxLength()),
+                base.prices.range(filter.getMinPrice(), filter.getMaxPrice()));
+
+        CompressedBitmap matches = rangeFilter;
+        for (CompressedBitmap facetFilter : facetFilters.values()) {
+            matches = intersect(matches, facetFilter);
+        }
+        if (matches == null) {
+            matches = base.all;
+        }
+
+        // Each facet is counted under every filter except its own, so the counts
+        // show what selecting another value of that facet would return
+        Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+        for (String facet : FACETS) {
+            CompressedBitmap others = rangeFilter;
+            for (Map.Entry<String, CompressedBitmap> other : facetFilters.entrySet()) {
+                if (!other.getKey().equals(facet)) {
+                    others = intersect(others, other.getValue());
+                }
+            }
+
+            Map<String, Integer> counts = new TreeMap<>();
+            for (Map.Entry<String, CompressedBitmap> value : base.facets.getOrDefault(facet, Map.of()).entrySet()) {
+                int count = others == null
+                        ? value.getValue().cardinality()
+                        : others.andCardinality(value.getValue());
+                for (int position : current.hidden) {
+                    if ((others == null || others.contains(position)) && value.getValue().contains(position)) {
+                        count--;
+                    }
+                }
+                counts.put(value.getKey(), count);
+            }
+            for (Row row : current.changed.values()) {
+                String value = row.facetValues.get(facet);
+                if (value != null && row.matches(filter, selected, facet)) {
+                    counts.merge(value, 1, Integer::sum);
+                }
+            }
+            facetCounts.put(facet, counts);
+        }
+
+        // Base positions are in wand id order, changed rows are merged into it
+        List<Wand> wands = new ArrayList<>();
+        int total = 0;
+        Iterator<Row> changed = current.changed.values().stream()
+                .filter(row -> row.matches(filter, selected, null)).iterator();
+        Row nextChanged = changed.hasNext() ? changed.next() : null;
+        for (int position : matches.toArray()) {
+            if (current.hidden.contains(position)) {
+                continue;
+            }
+            Wand wand = base.wands[position];
+            while (nextChanged != null && nextChanged.wand.getId() < wand.getId()) {
+                if (wands.size() < limit) {
+                    wands.add(nextChanged.wand);
+                }
+                total++;
+                nextChanged = changed.hasNext() ? changed.next() : null;
+            }
+            if (wands.size() < limit) {
+                wands.add(wand);
+            }
+            total++;
+        }
+        while (nextChanged != null) {
+            if (wands.size() < limit) {
+                wands.add(nextChanged.wand);
+            }
+            total++;
+            nextChanged = changed.hasNext() ? changed.next() : null;
+        }
+        return new FacetedSearchResult(wands, total, facetCounts);
+    }
+
+    private Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            long started;
+            synchronized (this) {
+                if (snapshot != null) {
+                    return snapshot;
+                }
+                started = generation;
+            }
+            Snapshot loaded = new Snapshot(loadBase(), new TreeMap<>(), new HashSet<>());
+            synchronized (this) {
+                if (generation == started) {
+                    snapshot = loaded;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    private static Base loadBase() throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        Base base = new Base();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_ROWS + "ORDER BY w.wand_id")) {
+
+            while (rs.next()) {
+                Row row = new Row(rs);
+                int position = rows.size();
+                rows.add(row);
+                for (Map.Entry<String, String> value : row.facetValues.entrySet()) {
+                    base.index(value.getKey(), value.getValue(), position);
+                }
+            }
+        }
+
+        base.wands = new Wand[rows.size()];
+        base.ids = new int[rows.size()];
+        double[] lengths = new double[rows.size()];
+        double[] prices = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Wand wand = rows.get(i).wand;
+            base.wands[i] = wand;
+            base.ids[i] = wand.getId();
+            lengths[i] = wand.getLength();
+            prices[i] = wand.getPrice();
+        }
+        base.lengths = new NumericColumn(lengths);
+        base.prices = new NumericColumn(prices);
+        base.all = CompressedBitmap.range(rows.size());
+        return base;
+    }
+
+    // Current rows of the given wands; deleted wands are missing from the result
+    private static Map<Integer, Row> loadRows(Collection<Integer> wandIds) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(wandIds.size(), "?"));
+        Map<Integer, Row> rows = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_ROWS + "WHERE w.wand_id IN (" + placeholders + ")")) {
+            int index = 1;
+            for (int wandId : wandIds) {
+                stmt.setInt(index++, wandId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Row row = new Row(rs);
+                    rows.put(row.wand.getId(), row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    // null stands for "no filter", so it is the identity of the intersection
+    private static CompressedBitmap intersect(CompressedBitmap a, CompressedBitmap b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.and(b);
+    }
+
+    private static Set<String> toStrings(Set<Integer> values) {
+        Set<String> result = new HashSet<>();
+        if (values != null) {
+            for (Integer value : values) {
+                result.add(String.valueOf(value));
+            }
+        }
+        return result;
+    }
+
+    private static boolean inRange(double value, Double min, Double max) {
+        return (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    // One wand with its facet values, as read from the catalog query
+    private static class Row {
+        private final Wand wand;
+        private final Map<String, String> facetValues = new LinkedHashMap<>();
+
+        Row(ResultSet rs) throws SQLException {
+            wand = WandService.extractWandFromResultSet(rs);
+            facetValues.put(FLEXIBILITY, wand.getFlexibility());
+            facetValues.put(CONDITION, wand.getCondition());
+            facetValues.put(STATUS, wand.getStatus());
+            facetValues.put(WOOD_RARITY, rs.getString("wood_rarity"));
+            facetValues.put(CORE_POWER, rs.getString("core_power"));
+        }
+
+        // Same semantics as the bitmap filters; ignoredFacet is left out, as for facet counts
+        boolean matches(WandFilter filter, Map<String, Set<String>> selected, String ignoredFacet) {
+            if (!inRange(wand.getLength(), filter.getMinLength(), filter.getMaxLength())
+                    || !inRange(wand.getPrice(), filter.getMinPrice(), filter.getMaxPrice())) {
+                return false;
+            }
+            for (Map.Entry<String, Set<String>> facet : selected.entrySet()) {
+                Set<String> values = facet.getValue();
+                if (!facet.getKey().equals(ignoredFacet) && values != null && !values.isEmpty()
+                        && !values.contains(facetValues.get(facet.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // The bitmap-indexed catalog as of the last rebuild; never modified once built
+    private static class Base {
+        private Wand[] wands;
+        private int[] ids;
+        private CompressedBitmap all;
+        private NumericColumn lengths;
+        private NumericColumn prices;
+        private final Map<String, Map<String, CompressedBitmap>> facets = new LinkedHashMap<>();
+
+        private void index(String facet, String value, int position) {
+            if (value == null) {
+                return;
+            }
+            facets.computeIfAbsent(facet, f -> new HashMap<>())
+                    .computeIfAbsent(value, v -> new CompressedBitmap())
+                    .add(position);
+        }
+
+        private CompressedBitmap union(String facet, Set<String> values) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+
+            CompressedBitmap result = new CompressedBitmap();
+            Map<String, CompressedBitmap> bitmaps = facets.getOrDefault(facet, Collections.emptyMap());
+            for (String value : values) {
+                CompressedBitmap bitmap = bitmaps.get(value);
+                if (bitmap != null) {
+                    result = result.or(bitmap);
+                }
+            }
+            return result;
+        }
+    }
+
+    // A base plus the wands written since it was built; each delta makes a new snapshot
+    private static class Snapshot {
+        private final Base base;
+        private final TreeMap<Integer, Row> changed;
+        private final Set<Integer> hidden;
+
+        Snapshot(Base base, TreeMap<Integer, Row> changed, Set<Integer> hidden) {
+            this.base = base;
+            this.changed = changed;
+            this.hidden = hidden;
+        }
+
+        Snapshot with(Collection<Integer> wandIds, Map<Integer, Row> rows) {
+            TreeMap<Integer, Row> nextChanged = new TreeMap<>(changed);
+            Set<Integer> nextHidden = new HashSet<>(hidden);
+            for (int wandId : wandIds) {
+                int position = Arrays.binarySearch(base.ids, wandId);
+                if (position >= 0) {
+                    nextHidden.add(position);
+                }
+                Row row = rows.get(wandId);
+                if (row != null) {
+                    nextChanged.put(wandId, row);
+                } else {
+                    nextChanged.remove(wandId);
+                }
+            }
+            return new Snapshot(base, nextChanged, nextHidden);
+        }
+    }
+
+    private static class NumericColumn {
+        private final double[] sortedValues;
+        private final int[] positions;
+        private final int size;
+
+        NumericColumn(double[] values) {
+            size = values.length;
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+
+            sortedValues = new double[size];
+            positions = new int[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = order[i];
+                sortedValues[i] = values[order[i]];
+            }
+        }
+
+        // Positions with min <= value <= max; null bounds are open
+        CompressedBitmap range(Double min, Double max) {
+            if (min == null && max == null) {
+                return null;
+            }
+
+            int from = min == null ? 0 : firstIndexAtLeast(min);
+            int to = max == null ? size : firstIndexAbove(max);
+
+            BitSet bits = new BitSet(size);
+            for (int i = from; i < to; i++) {
+                bits.set(positions[i]);
+            }
+            int[] sorted = bits.stream().toArray();
+            return CompressedBitmap.fromSorted(sorted, 0, sorted.length);
+        }
+
+        private int firstIndexAtLeast(double value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedValues[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int firstIndexAbove(double value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedValues[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
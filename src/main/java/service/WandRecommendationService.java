@@ -0,0 +1,402 @@
+package service;
+
+import db.DatabaseConnection;
+import model.Customer;
+import model.Wand;
+import model.WandRecommendation;
+import util.TopKHeap;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Scores every in-stock wand against a customer using the wood and core
+ * attributes of the schema (optimal length range, characteristics, power,
+ * adaptability and danger). Scoring runs in parallel over a primitive-array
+ * snapshot of the stock and each chunk keeps only its best k candidates.
+ * Writes to single wands hide the old entry and add the current row to a
+ * small side snapshot, so the stock is only reloaded after bulk changes.
+ */
+public class WandRecommendationService {
+    public static final int DEFAULT_RECOMMENDATIONS = 10;
+
+    private static final WandRecommendationService INSTANCE = new WandRecommendationService();
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_CHANGED_WANDS = 500;
+    private static final String SELECT_STOCK = "SELECT w.*, wt.name AS wood_name, wt.optimal_length_min, " +
+            "wt.optimal_length_max, wt.common_characteristics, c.material AS core_material, c.power_level, " +
+            "c.adaptability, c.danger_level " +
+            "FROM wands w " +
+            "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
+            "JOIN cores c ON w.core_id = c.core_id " +
+            "WHERE w.status = 'in_stock' ";
+
+    // Wood traits parsed from common_characteristics
+    private static final int TRAIT_PROTECTIVE = 1;
+    private static final int TRAIT_POWERFUL = 1 << 1;
+    private static final int TRAIT_DARK = 1 << 2;
+    private static final int TRAIT_GENTLE = 1 << 3;
+    private static final int TRAIT_STURDY = 1 << 4;
+    private static final int TRAIT_DEMANDING = 1 << 5;
+
+    private final Object loadLock = new Object();
+    private volatile Stock stock;
+    // Bumped by every write, so a load that raced one is used once but not kept; guarded by this
+    private long generation;
+
+    private WandRecommendationService() {}
+
+    public static WandRecommendationService getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        stock = null;
+    }
+
+    // Committed inserts, updates and deletions of the given wands
+    public synchronized void wandsChanged(Collection<Integer> wandIds) {
+        if (wandIds.isEmpty()) {
+            return;
+        }
+        generation++;
+        Stock current = stock;
+        if (current == null) {
+            return;
+        }
+        if (current.changed.size() + current.hidden.size() + wandIds.size() > MAX_CHANGED_WANDS) {
+            stock = null;
+            return;
+        }
+        // Rows are read under the lock, so the last delta applied is never older than an earlier one
+        try {
+            stock = current.with(wandIds, loadRows(wandIds));
+        } catch (SQLException e) {
+            stock = null;
+        }
+    }
+
+    public List<WandRecommendation> recommend(Customer customer, int count) throws SQLException {
+        Stock current = getStock();
+        Snapshot base = current.base;
+        Snapshot extra = current.extra;
+        CustomerProfile profile = new CustomerProfile(customer);
+
+        int chunks = (base.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        TopKHeap best = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> {
+                    TopKHeap heap = new TopKHeap(count);
+                    int end = Math.min(base.size, (chunk + 1) * CHUNK_SIZE);
+                    for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                        if (!current.hidden.contains(i)) {
+                            heap.offer(i, score(base, i, profile));
+                        }
+                    }
+                    return heap;
+                })
+                .reduce(TopKHeap::merge)
+                .orElse(new TopKHeap(count));
+
+        // Changed wands are numbered after the base positions
+        TopKHeap changedBest = new TopKHeap(count);
+        for (int i = 0; i < extra.size; i++) {
+            changedBest.offer(base.size + i, score(extra, i, profile));
+        }
+        best = best.merge(changedBest);
+
+        List<WandRecommendation> recommendations = new ArrayList<>();
+        int[] positions = best.sortedIds();
+        double[] scores = best.sortedScores();
+        for (int i = 0; i < positions.length; i++) {
+            Snapshot source = positions[i] < base.size ? base : extra;
+            int position = positions[i] < base.size ? positions[i] : positions[i] - base.size;
+            recommendations.add(new WandRecommendation(
+                    source.wands[position],
+                    source.woodNames[position],
+                    source.coreMaterials[position],
+                    scores[i]));
+        }
+        return recommendations;
+    }
+
+    private static double score(Snapshot s, int i, CustomerProfile p) {
+        // Length: how well the wand sits inside its wood's optimal range and near the customer's ideal
+        double length = s.length[i];
+        double lengthFit;
+        if (length >= s.optimalMin[i] && length <= s.optimalMax[i]) {
+            lengthFit = 1.0;
+        } else {
+            double miss = length < s.optimalMin[i] ? s.optimalMin[i] - length : length - s.optimalMax[i];
+            lengthFit = Math.max(0.0, 1.0 - miss / 2.0);
+        }
+        double idealFit = Math.max(0.0, 1.0 - Math.abs(length - p.idealLength) / 4.0);
+
+        // Core: power is wanted, danger must stay within what the customer can handle
+        double power = s.power[i] / 10.0;
+        double adaptability = s.adaptability[i] / 10.0;
+        double dangerExcess = Math.max(0, s.danger[i] - p.dangerTolerance) / 4.0;
+        double coreFit = p.powerWeight * power + p.adaptabilityWeight * adaptability - dangerExcess;
+
+        // Wood character against the customer's house
+        int traits = s.traits[i];
+        double affinity = 0.0;
+        if ((traits & p.preferredTraits) != 0) {
+            affinity += Integer.bitCount(traits & p.preferredTraits) * 0.5;
+        }
+        if ((traits & p.avoidedTraits) != 0) {
+            affinity -= Integer.bitCount(traits & p.avoidedTraits) * 0.5;
+        }
+
+        double raw = 30.0 * lengthFit + 20.0 * idealFit + 35.0 * coreFit + 15.0 * affinity;
+        return Math.max(0.0, Math.min(100.0, raw));
+    }
+
+    private Stock getStock() throws SQLException {
+        Stock current = stock;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            long started;
+            synchronized (this) {
+                if (stock != null) {
+                    return stock;
+                }
+                started = generation;
+            }
+            Stock loaded;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(SELECT_STOCK + "ORDER BY w.wand_id")) {
+                loaded = new Stock(Snapshot.of(readRows(rs)), new TreeMap<>(), new HashSet<>());
+            }
+            synchronized (this) {
+                if (generation == started) {
+                    stock = loaded;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    // Current rows of the given wands that are in stock; the others are missing from the result
+    private static Map<Integer, Row> loadRows(Collection<Integer> wandIds) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(wandIds.size(), "?"));
+        Map<Integer, Row> rows = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_STOCK + "AND w.wand_id IN (" + placeholders + ")")) {
+            int index = 1;
+            for (int wandId : wandIds) {
+                stmt.setInt(index++, wandId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                for (Row row : readRows(rs)) {
+                    rows.put(row.wand.getId(), row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static List<Row> readRows(ResultSet rs) throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        while (rs.next()) {
+            Row row = new Row();
+            row.wand = WandService.extractWandFromResultSet(rs);
+            row.woodName = rs.getString("wood_name");
+            row.coreMaterial = rs.getString("core_material");
+            row.optimalMin = rs.getDouble("optimal_length_min");
+            row.optimalMax = rs.getDouble("optimal_length_max");
+            row.power = rs.getInt("power_level");
+            row.adaptability = rs.getInt("adaptability");
+            row.danger = rs.getInt("danger_level");
+            row.traits = parseTraits(rs.getString("common_characteristics"));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static int parseTraits(String characteristics) {
+        if (characteristics == null) {
+            return 0;
+        }
+        String text = characteristics.toLowerCase();
+        int traits = 0;
+        if (text.contains("protect")) traits |= TRAIT_PROTECTIVE;
+        if (text.contains("power")) traits |= TRAIT_POWERFUL;
+        if (text.contains("dark")) traits |= TRAIT_DARK;
+        if (text.contains("charm") || text.contains("grace") || text.contains("heal")) traits |= TRAIT_GENTLE;
+        if (text.contains("durable") || text.contains("strong") || text.contains("long-lived")) traits |= TRAIT_STURDY;
+        if (text.contains("difficult") || text.contains("tricky") || text.contains("master")) traits |= TRAIT_DEMANDING;
+        return traits;
+    }
+
+    // One in-stock wand with the wood and core attributes it is scored on
+    private static class Row {
+        private Wand wand;
+        private String woodName;
+        private String coreMaterial;
+        private double optimalMin;
+        private double optimalMax;
+        private int power;
+        private int adaptability;
+        private int danger;
+        private int traits;
+    }
+
+    // The stock as of the last load plus the wands written since; each delta makes a new Stock
+    private static class Stock {
+        private final Snapshot base;
+        private final TreeMap<Integer, Row> changed;
+        private final Set<Integer> hidden;
+        private final Snapshot extra;
+
+        Stock(Snapshot base, TreeMap<Integer, Row> changed, Set<Integer> hidden) {
+            this.base = base;
+            this.changed = changed;
+            this.hidden = hidden;
+            this.extra = Snapshot.of(new ArrayList<>(changed.values()));
+        }
+
+        Stock with(Collection<Integer> wandIds, Map<Integer, Row> rows) {
+            TreeMap<Integer, Row> nextChanged = new TreeMap<>(changed);
+            Set<Integer> nextHidden = new HashSet<>(hidden);
+            for (int wandId : wandIds) {
+                int position = Arrays.binarySearch(base.ids, wandId);
+                if (position >= 0) {
+                    nextHidden.add(position);
+                }
+                Row row = rows.get(wandId);
+                if (row != null) {
+                    nextChanged.put(wandId, row);
+                } else {
+                    nextChanged.remove(wandId);
+                }
+            }
+            return new Stock(base, nextChanged, nextHidden);
+        }
+    }
+
+    private static class Snapshot {
+        private final int size;
+        private final int[] ids;
+        private final Wand[] wands;
+        private final String[] woodNames;
+        private final String[] coreMaterials;
+        private final double[] length;
+        private final double[] optimalMin;
+        private final double[] optimalMax;
+        private final int[] power;
+        private final int[] adaptability;
+        private final int[] danger;
+        private final int[] traits;
+
+        Snapshot(int size) {
+            this.size = size;
+            ids = new int[size];
+            wands = new Wand[size];
+            woodNames = new String[size];
+            coreMaterials = new String[size];
+            length = new double[size];
+            optimalMin = new double[size];
+            optimalMax = new double[size];
+            power = new int[size];
+            adaptability = new int[size];
+            danger = new int[size];
+            traits = new int[size];
+        }
+
+        // rows must be in wand id order
+        static Snapshot of(List<Row> rows) {
+            Snapshot snapshot = new Snapshot(rows.size());
+            for (int i = 0; i < snapshot.size; i++) {
+                Row row = rows.get(i);
+                snapshot.ids[i] = row.wand.getId();
+                snapshot.wands[i] = row.wand;
+                snapshot.woodNames[i] = row.woodName;
+                snapshot.coreMaterials[i] = row.coreMaterial;
+                snapshot.length[i] = row.wand.getLength();
+                snapshot.optimalMin[i] = row.optimalMin;
+                snapshot.optimalMax[i] = row.optimalMax;
+                snapshot.power[i] = row.power;
+                snapshot.adaptability[i] = row.adaptability;
+                snapshot.danger[i] = row.danger;
+                snapshot.traits[i] = row.traits;
+            }
+            return snapshot;
+        }
+    }
+
+    private static class CustomerProfile {
+        private double idealLength = 11.0;
+        private int dangerTolerance = 3;
+        private double powerWeight = 0.6;
+        private double adaptabilityWeight = 0.4;
+        private int preferredTraits;
+        private int avoidedTraits;
+
+        CustomerProfile(Customer customer) {
+            Integer age = ageOf(customer.getBirthDate());
+            if (age != null && age < 17) {
+                // Young wizards do better with forgiving, adaptable wands
+                idealLength = 10.0;
+                dangerTolerance = 2;
+                powerWeight = 0.4;
+                adaptabilityWeight = 0.6;
+            } else if (age != null && age > 60) {
+                dangerTolerance = 4;
+                powerWeight = 0.7;
+                adaptabilityWeight = 0.3;
+            }
+
+            String species = customer.getSpecies() == null ? "human" : customer.getSpecies().toLowerCase();
+            if (species.contains("giant")) {
+                idealLength += 4.0;
+                dangerTolerance += 1;
+            } else if (species.contains("goblin") || species.contains("elf")) {
+                idealLength -= 1.5;
+            }
+
+            String house = customer.getHouse() == null ? "Other" : customer.getHouse();
+            switch (house) {
+                case "Gryffindor":
+                    preferredTraits = TRAIT_PROTECTIVE | TRAIT_POWERFUL;
+                    avoidedTraits = TRAIT_DARK;
+                    dangerTolerance += 1;
+                    break;
+                case "Slytherin":
+                    preferredTraits = TRAIT_POWERFUL | TRAIT_DARK | TRAIT_DEMANDING;
+                    break;
+                case "Ravenclaw":
+                    preferredTraits = TRAIT_GENTLE | TRAIT_DEMANDING;
+                    adaptabilityWeight += 0.1;
+                    break;
+                case "Hufflepuff":
+                    preferredTraits = TRAIT_STURDY | TRAIT_PROTECTIVE | TRAIT_GENTLE;
+                    avoidedTraits = TRAIT_DARK;
+                    dangerTolerance -= 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private static Integer ageOf(String birthDate) {
+            if (birthDate == null || birthDate.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                return Period.between(LocalDate.parse(birthDate.trim()), LocalDate.now()).getYears();
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
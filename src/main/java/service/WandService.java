@@ -2,8 +2,10 @@
 
     import db.DatabaseConnection;
     import model.*;
+    import util.FtsQuery;
     import java.sql.*;
     import java.util.ArrayList;
+    import java.util.Collection;
     import java.util.List;
 
     public class WandService {
@@ -15,10 +17,42 @@
         }
 
         public boolean createWand(Wand wand) throws SQLException {
-            if (!hasSufficientInventory(wand.getWoodId(), wand.getCoreId())) {
+            Reservation reservation = ReservationService.getInstance()
+                    .tryReserve(wand.getWoodId(), wand.getCoreId(), ReservationService.DEFAULT_TTL_MILLIS);
+            if (reservation == null) {
                 throw new SQLException("Insufficient inventory to create this wand");
             }
+            return createWand(wand, reservation);
+        }
+
+        // Turns the reservation held for this build into consumption of its wood and core
+        public boolean createWand(Wand wand, Reservation reservation) throws SQLException {
+            if (reservation.getWoodId() != wand.getWoodId() || reservation.getCoreId() != wand.getCoreId()) {
+                throw new SQLException("Reservation does not match the wand's wood and core");
+            }
+            ReservationService reservations = ReservationService.getInstance();
+            if (reservations.claim(reservation) == null) {
+                throw new SQLException("Reservation expired, please check stock and try again");
+            }
+
+            long version;
+            try {
+                // Pending stock adjustments must reach the database before it is decremented there
+                StockCache.getInstance().flush();
+                version = insertWand(wand);
+            } catch (SQLException | RuntimeException e) {
+                reservations.returnStock(reservation);
+                throw e;
+            }
+            StockCache.getInstance().consumeReserved("wood", wand.getWoodId(), 1, version);
+            StockCache.getInstance().consumeReserved("core", wand.getCoreId(), 1, version);
+            WandAllocationIndex.getInstance().wandSaved(wand);
+            wandsChanged(List.of(wand.getId()));
+            return true;
+        }
 
+        // Returns the component_inventory version it committed
+        private long insertWand(Wand wand) throws SQLException {
             String sql = "INSERT INTO wands (wood_id, core_id, length, flexibility, " +
                     "condition, special_features, price, status, notes) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
@@ -52,12 +86,14 @@
                         }
                     }
 
-                    inventoryService.updateStock("wood", wand.getWoodId(), -1, conn);
-                    inventoryService.updateStock("core", wand.getCoreId(), -1, conn);
+                    if (!inventoryService.updateStock("wood", wand.getWoodId(), -1, "production", wand.getId(), conn)
+                            || !inventoryService.updateStock("core", wand.getCoreId(), -1, "production", wand.getId(), conn)) {
+                        throw new SQLException("No inventory row for the wand's wood or core");
+                    }
 
+                    long version = StockCache.inventoryVersion(conn);
                     conn.commit();
-                    return true;
-
+                    return version;
                 } catch (SQLException e) {
                     conn.rollback();
                     throw e;
@@ -65,9 +101,18 @@
             }
         }
 
-        private boolean hasSufficientInventory(int woodId, int coreId) throws SQLException {
-            return inventoryService.getQuantity("wood", woodId) > 0 &&
-                    inventoryService.getQuantity("core", coreId) > 0;
+        // Drops the in-memory catalog snapshots so they are rebuilt on next use, e.g. after a reset
+        public static void catalogChanged() {
+            WandFacetIndex.getInstance().invalidate();
+            WandRecommendationService.getInstance().invalidate();
+            SalesAnalyticsService.getInstance().invalidate();
+        }
+
+        // Committed writes to known wands, applied to the snapshots without a rebuild
+        static void wandsChanged(Collection<Integer> wandIds) {
+            WandFacetIndex.getInstance().wandsChanged(wandIds);
+            WandRecommendationService.getInstance().wandsChanged(wandIds);
+            SalesAnalyticsService.getInstance().invalidate();
         }
 
         public static WandWithDetails getWandDetails(int wandId) throws SQLException {
@@ -154,10 +199,12 @@
 
         public List<Wand> searchWands(String query) throws SQLException {
             List<Wand> wands = new ArrayList<>();
+            String match = FtsQuery.prefixMatch(query);
             String sql = "SELECT w.* FROM wands w " +
                     "JOIN wood_types wt ON w.wood_id = wt.wood_id " +
                     "JOIN cores c ON w.core_id = c.core_id " +
-                    "WHERE wt.name LIKE ? OR c.material LIKE ? OR w.status LIKE ?";
+                    "WHERE wt.name LIKE ? OR c.material LIKE ? OR w.status LIKE ?" +
+                    (match != null ? " OR w.wand_id IN (SELECT rowid FROM wands_fts WHERE wands_fts MATCH ?)" : "");
 
             try (Connection conn = DatabaseConnection.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -165,6 +212,9 @@
                 stmt.setString(1, "%" + query + "%");
                 stmt.setString(2, "%" + query + "%");
                 stmt.setString(3, "%" + query + "%");
+                if (match != null) {
+                    stmt.setString(4, match);
+                }
 
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
@@ -175,6 +225,50 @@
             return wands;
         }
 
+        // Searches special features and notes, best matches first
+        public List<Wand> searchWandDescriptions(String text, int limit) throws SQLException {
+            List<Wand> wands = new ArrayList<>();
+            String match = FtsQuery.prefixMatch(text);
+            if (match == null) {
+                return wands;
+            }
+
+            String sql = "SELECT w.* FROM wands_fts f " +
+                    "JOIN wands w ON w.wand_id = f.rowid " +
+                    "WHERE wands_fts MATCH ? " +
+                    "ORDER BY bm25(wands_fts, 2.0, 1.0) " +
+                    "LIMIT ?";
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                stmt.setString(1, match);
+                stmt.setInt(2, limit);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        wands.add(extractWandFromResultSet(rs));
+                    }
+                }
+            }
+            return wands;
+        }
+
+        public void rebuildSearchIndex() throws SQLException {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO wands_fts (wands_fts) VALUES ('rebuild')");
+            }
+        }
+
+        public FacetedSearchResult filterWands(WandFilter filter, int limit) throws SQLException {
+            return WandFacetIndex.getInstance().search(filter, limit);
+        }
+
+        public List<WandRecommendation> recommendWands(Customer customer) throws SQLException {
+            return WandRecommendationService.getInstance().recommend(customer, WandRecommendationService.DEFAULT_RECOMMENDATIONS);
+        }
+
         public Wand getWandById(int wandId) throws SQLException {
             String sql = "SELECT * FROM wands WHERE wand_id = ?";
 
@@ -192,28 +286,72 @@
         }
 
         public boolean updateWand(Wand wand) throws SQLException {
+            return updateWand(wand, "Manual edit");
+        }
+
+        // A price change is written to price_history in the same transaction as the update
+        public boolean updateWand(Wand wand, String priceChangeReason) throws SQLException {
+            String priceSql = "SELECT price FROM wands WHERE wand_id = ?";
             String sql = "UPDATE wands SET wood_id = ?, core_id = ?, length = ?, " +
                     "flexibility = ?, condition = ?, special_features = ?, " +
                     "price = ?, status = ?, notes = ? WHERE wand_id = ?";
 
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
 
-                stmt.setInt(1, wand.getWoodId());
-                stmt.setInt(2, wand.getCoreId());
-                stmt.setDouble(3, wand.getLength());
-                stmt.setString(4, wand.getFlexibility());
-                stmt.setString(5, wand.getCondition());
-                stmt.setString(6, wand.getSpecialFeatures());
-                stmt.setDouble(7, wand.getPrice());
-                stmt.setString(8, wand.getStatus());
-                stmt.setString(9, wand.getNotes());
-                stmt.setInt(10, wand.getId());
-
-                return stmt.executeUpdate() > 0;
+                try {
+                    Double oldPrice = null;
+                    try (PreparedStatement stmt = conn.prepareStatement(priceSql)) {
+                        stmt.setInt(1, wand.getId());
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            if (rs.next()) {
+                                oldPrice = rs.getDouble("price");
+                            }
+                        }
+                    }
+                    if (oldPrice == null) {
+                        conn.rollback();
+                        return false;
+                    }
+
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        stmt.setInt(1, wand.getWoodId());
+                        stmt.setInt(2, wand.getCoreId());
+                        stmt.setDouble(3, wand.getLength());
+                        stmt.setString(4, wand.getFlexibility());
+                        stmt.setString(5, wand.getCondition());
+                        stmt.setString(6, wand.getSpecialFeatures());
+                        stmt.setDouble(7, wand.getPrice());
+                        stmt.setString(8, wand.getStatus());
+                        stmt.setString(9, wand.getNotes());
+                        stmt.setInt(10, wand.getId());
+                        stmt.executeUpdate();
+                    }
+
+                    boolean priceChanged = Double.compare(oldPrice, wand.getPrice()) != 0;
+                    if (priceChanged) {
+                        PriceHistoryService.getInstance().insertChange(
+                                conn, wand.getId(), oldPrice, wand.getPrice(), priceChangeReason);
+                    }
+
+                    conn.commit();
+                    if (priceChanged) {
+                        PriceHistoryService.getInstance().changesCommitted(List.of(wand.getId()));
+                    }
+                    WandAllocationIndex.getInstance().wandSaved(wand);
+                    wandsChanged(List.of(wand.getId()));
+                    return true;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
             }
         }
 
+        public Double getPriceAsOf(int wandId, String date) throws SQLException {
+            return PriceHistoryService.getInstance().getPriceAsOf(wandId, date);
+        }
+
         public boolean deleteWand(int wandId) throws SQLException {
             String sql = "DELETE FROM wands WHERE wand_id = ?";
 
@@ -221,7 +359,13 @@
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
 
                 stmt.setInt(1, wandId);
-                return stmt.executeUpdate() > 0;
+                if (stmt.executeUpdate() > 0) {
+                    PriceHistoryService.getInstance().wandDeleted(wandId);
+                    WandAllocationIndex.getInstance().wandsRemoved(List.of(wandId));
+                    wandsChanged(List.of(wandId));
+                    return true;
+                }
+                return false;
             }
         }
 
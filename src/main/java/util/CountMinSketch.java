@@ -0,0 +1,76 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Frequency estimates for string keys in a fixed width x depth counter table.
+ * An estimate never undercounts; with probability 1 - delta it overcounts by at
+ * most epsilon times the total of everything added.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[][] counters;
+    private long total;
+
+    public CountMinSketch(double epsilon, double delta) {
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new long[depth][width];
+    }
+
+    public void add(String key, long count) {
+        long hash = hash(key);
+        for (int row = 0; row < depth; row++) {
+            counters[row][slot(hash, row)] += count;
+        }
+        total += count;
+    }
+
+    public long estimate(String key) {
+        long hash = hash(key);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row][slot(hash, row)]);
+        }
+        return min;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // Upper bound on how far any estimate may exceed the true count (with high probability)
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    public void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+        total = 0;
+    }
+
+    private int slot(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+    }
+
+    // 64-bit FNV-1a followed by a murmur finalizer
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,92 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter with small counters instead of bits so that entries can also be
+ * removed. A negative answer is definite; a positive answer has to be confirmed
+ * by the caller. Counters stick once they saturate so removals can never cause
+ * false negatives.
+ */
+public class CountingBloomFilter {
+    private static final int SATURATED = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+    private final int expectedEntries;
+    private int entries;
+
+    public CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(expectedEntries, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Math.max(m, 64), Integer.MAX_VALUE - 8)];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / n * Math.log(2)));
+        this.expectedEntries = n;
+    }
+
+    public synchronized void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(hash, i);
+            int count = counters[slot] & 0xFF;
+            if (count < SATURATED) {
+                counters[slot] = (byte) (count + 1);
+            }
+        }
+        entries++;
+    }
+
+    // Only call for values that were added before, otherwise other entries may be lost
+    public synchronized void remove(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(hash, i);
+            int count = counters[slot] & 0xFF;
+            if (count > 0 && count < SATURATED) {
+                counters[slot] = (byte) (count - 1);
+            }
+        }
+        entries = Math.max(0, entries - 1);
+    }
+
+    public synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[slot(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // True once more entries were added than the filter was sized for
+    public synchronized boolean isOverloaded() {
+        return entries > expectedEntries;
+    }
+
+    public synchronized int getEntries() {
+        return entries;
+    }
+
+    private int slot(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % counters.length;
+    }
+
+    // 64-bit FNV-1a followed by a murmur finalizer
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,30 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class FtsQuery {
+
+    private FtsQuery() {}
+
+    /**
+     * Builds an FTS5 MATCH expression where every word of the input must appear
+     * as a token prefix in one of the given columns. Returns null when the input
+     * has no searchable words.
+     */
+    public static String prefixMatch(String text, String... columns) {
+        if (text == null) {
+            return null;
+        }
+
+        String columnFilter = columns.length == 0 ? "" : "{" + String.join(" ", columns) + "} : ";
+        List<String> terms = new ArrayList<>();
+
+        for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add(columnFilter + "\"" + token + "\"*");
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" AND ", terms);
+    }
+}
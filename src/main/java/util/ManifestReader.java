@@ -0,0 +1,297 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams flat records from a delivery manifest, one at a time, so the file is
+ * never held in memory. CSV needs a header row and may quote fields with
+ * double quotes. JSON must be an array of objects whose values are strings,
+ * numbers, booleans or null, with nothing but whitespace after it. Keys are
+ * lower-cased. A leading byte order mark is skipped. next() returns null at
+ * the end of the file, and getLineNumber() tells where the last record started.
+ */
+public abstract class ManifestReader implements AutoCloseable {
+    protected final Reader in;
+    protected int line = 1;
+    protected int recordLine;
+    private int peeked = -2;
+    private boolean started;
+
+    protected ManifestReader(Reader in) {
+        this.in = in;
+    }
+
+    public static ManifestReader csv(Reader in) {
+        return new Csv(in);
+    }
+
+    public static ManifestReader json(Reader in) {
+        return new Json(in);
+    }
+
+    public abstract Map<String, String> next() throws IOException;
+
+    public int getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    protected int read() throws IOException {
+        int c;
+        if (peeked != -2) {
+            c = peeked;
+            peeked = -2;
+        } else {
+            c = readChar();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    protected int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = readChar();
+        }
+        return peeked;
+    }
+
+    // Editors on Windows like to start UTF-8 files with a byte order mark
+    private int readChar() throws IOException {
+        int c = in.read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = in.read();
+            }
+        }
+        return c;
+    }
+
+    protected IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+    private static class Csv extends ManifestReader {
+        private List<String> header;
+
+        Csv(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = readRow();
+                if (header == null) {
+                    return null;
+                }
+                header.replaceAll(name -> name.trim().toLowerCase());
+            }
+
+            List<String> row;
+            do {
+                recordLine = line;
+                row = readRow();
+                if (row == null) {
+                    return null;
+                }
+            } while (row.size() == 1 && row.get(0).trim().isEmpty());   // blank lines
+
+            if (row.size() > header.size()) {
+                throw new IOException("Line " + recordLine + ": " + row.size()
+                        + " fields but the header has " + header.size());
+            }
+            Map<String, String> record = new LinkedHashMap<>();
+            for (int i = 0; i < row.size(); i++) {
+                record.put(header.get(i), row.get(i).trim());
+            }
+            return record;
+        }
+
+        private List<String> readRow() throws IOException {
+            int c = peek();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                c = read();
+                if (quoted) {
+                    if (c == -1) {
+                        throw error("unterminated quoted field");
+                    } else if (c == '"' && peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r') {
+                    // part of a CRLF line ending
+                } else if (c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+    }
+
+    private static class Json extends ManifestReader {
+        private boolean opened;
+        private boolean finished;
+
+        Json(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            if (!opened) {
+                expect('[');
+                opened = true;
+                if (skipWhitespace() == ']') {
+                    read();
+                    finish();
+                    return null;
+                }
+            } else {
+                int c = skipWhitespace();
+                read();
+                if (c == ']') {
+                    finish();
+                    return null;
+                }
+                if (c != ',') {
+                    throw error("expected ',' or ']' between records");
+                }
+            }
+
+            skipWhitespace();
+            recordLine = line;
+            expect('{');
+            Map<String, String> record = new LinkedHashMap<>();
+            if (skipWhitespace() == '}') {
+                read();
+                return record;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString().toLowerCase();
+                expect(':');
+                record.put(key, readValue());
+                int c = skipWhitespace();
+                read();
+                if (c == '}') {
+                    return record;
+                }
+                if (c != ',') {
+                    throw error("expected ',' or '}' in object");
+                }
+            }
+        }
+
+        // Anything after the closing ']' means the file is not the array it claims to be
+        private void finish() throws IOException {
+            if (skipWhitespace() != -1) {
+                throw error("unexpected content after the closing ']'");
+            }
+            finished = true;
+        }
+
+        private String readValue() throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                return readString();
+            }
+            StringBuilder literal = new StringBuilder();
+            while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                literal.append((char) read());
+                c = peek();
+            }
+            String value = literal.toString();
+            if (value.equals("null")) {
+                return null;
+            }
+            if (value.equals("true") || value.equals("false") || value.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return value;
+            }
+            throw error(value.isEmpty() ? "missing value" : "nested or invalid value '" + value + "'");
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("unterminated string");
+                } else if (c == '"') {
+                    return value.toString();
+                } else if (c == '\\') {
+                    int escaped = read();
+                    switch (escaped) {
+                        case 'n': value.append('\n'); break;
+                        case 't': value.append('\t'); break;
+                        case 'r': value.append('\r'); break;
+                        case 'b': value.append('\b'); break;
+                        case 'f': value.append('\f'); break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) {
+                                hex[i] = (char) read();
+                            }
+                            try {
+                                value.append((char) Integer.parseInt(new String(hex), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("invalid \\u escape");
+                            }
+                            break;
+                        case -1: throw error("unterminated string");
+                        default: value.append((char) escaped);
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            skipWhitespace();
+            int c = read();
+            if (c != expected) {
+                throw error("expected '" + expected + "'" + (c == -1 ? " before end of file" : ""));
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            while (Character.isWhitespace(peek())) {
+                read();
+            }
+            return peek();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed (radix) prefix trie. Each edge holds a whole run of characters, so
+ * lookups cost one step per branching point rather than one per character.
+ * Several values may share a key; keys are case-insensitive.
+ */
+public class PrefixTrie<V> {
+
+    private static class Node<V> {
+        private String label;
+        private final TreeMap<Character, Node<V>> children = new TreeMap<>();
+        private List<V> values;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Node<V> root = new Node<>("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public void put(String key, V value) {
+        lock.writeLock().lock();
+        try {
+            Node<V> node = root;
+            String rest = normalize(key);
+
+            while (!rest.isEmpty()) {
+                Node<V> child = node.children.get(rest.charAt(0));
+                if (child == null) {
+                    child = new Node<>(rest);
+                    node.children.put(rest.charAt(0), child);
+                    node = child;
+                    break;
+                }
+
+                int common = commonPrefixLength(child.label, rest);
+                if (common < child.label.length()) {
+                    Node<V> split = new Node<>(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.children.put(child.label.charAt(0), child);
+                    node.children.put(split.label.charAt(0), split);
+                    child = split;
+                }
+                node = child;
+                rest = rest.substring(common);
+            }
+
+            if (node.values == null) {
+                node.values = new ArrayList<>(1);
+            }
+            node.values.add(value);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String key, V value) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = remove(root, normalize(key), value);
+            if (removed) {
+                size--;
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean remove(Node<V> node, String rest, V value) {
+        if (rest.isEmpty()) {
+            return node.values != null && node.values.remove(value);
+        }
+
+        Node<V> child = node.children.get(rest.charAt(0));
+        if (child == null || !rest.startsWith(child.label)) {
+            return false;
+        }
+        if (!remove(child, rest.substring(child.label.length()), value)) {
+            return false;
+        }
+
+        boolean childHasValues = child.values != null && !child.values.isEmpty();
+        if (!childHasValues && child.children.isEmpty()) {
+            node.children.remove(child.label.charAt(0));
+        } else if (!childHasValues && child.children.size() == 1) {
+            // Merge the now redundant branching point into its only child
+            Node<V> grandChild = child.children.firstEntry().getValue();
+            grandChild.label = child.label + grandChild.label;
+            node.children.put(grandChild.label.charAt(0), grandChild);
+        }
+        return true;
+    }
+
+    /**
+     * Returns up to {@code limit} values whose key starts with the prefix,
+     * in key order.
+     */
+    public List<V> find(String prefix, int limit) {
+        List<V> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+
+        lock.readLock().lock();
+        try {
+            Node<V> node = root;
+            String rest = normalize(prefix);
+
+            while (!rest.isEmpty()) {
+                Node<V> child = node.children.get(rest.charAt(0));
+                if (child == null) {
+                    return result;
+                }
+                if (rest.length() <= child.label.length()) {
+                    if (!child.label.startsWith(rest)) {
+                        return result;
+                    }
+                    node = child;
+                    break;
+                }
+                if (!rest.startsWith(child.label)) {
+                    return result;
+                }
+                rest = rest.substring(child.label.length());
+                node = child;
+            }
+
+            collect(node, result, limit);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collect(Node<V> node, List<V> result, int limit) {
+        if (node.values != null) {
+            for (V value : node.values) {
+                if (result.size() >= limit) {
+                    return;
+                }
+                result.add(value);
+            }
+        }
+        for (Node<V> child : node.children.values()) {
+            if (result.size() >= limit) {
+                return;
+            }
+            collect(child, result, limit);
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.values = null;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String key) {
+        return key == null ? "" : key.trim().toLowerCase();
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,82 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Space-Saving top-k counter. Tracks at most {@code capacity} keys; when a new
+ * key arrives and the table is full it replaces the smallest counter and
+ * inherits its count as possible overestimation. Any key whose true count is
+ * above total / capacity is guaranteed to be tracked.
+ */
+public class SpaceSaving<K> {
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(K key, long count) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new Counter<>(key, count, 0));
+            return;
+        }
+
+        // capacity is small, so finding the minimum by scanning is cheap
+        Counter<K> smallest = null;
+        for (Counter<K> candidate : counters.values()) {
+            if (smallest == null || candidate.count < smallest.count) {
+                smallest = candidate;
+            }
+        }
+        counters.remove(smallest.key);
+        counters.put(key, new Counter<>(key, smallest.count + count, smallest.count));
+    }
+
+    // Highest counts first
+    public List<Counter<K>> top(int k) {
+        List<Counter<K>> result = new ArrayList<>();
+        for (Counter<K> counter : counters.values()) {
+            result.add(new Counter<>(counter.key, counter.count, counter.error));
+        }
+        result.sort((a, b) -> Long.compare(b.count, a.count));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    public static class Counter<K> {
+        private final K key;
+        private long count;
+        private final long error;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        // May overcount by at most getError()
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
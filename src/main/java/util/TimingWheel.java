@@ -0,0 +1,103 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel. Timeouts are dropped into the slot of their deadline,
+ * and one daemon thread visits a single slot per tick, so expiring entries
+ * costs nothing for the ones that are not due (no full scans). Deadlines
+ * further away than one turn wait for extra rounds. Expiry is accurate to
+ * one tick.
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final List<Set<Timeout<T>>> slots = new ArrayList<>();
+    private final Consumer<T> onExpire;
+    private final Thread worker;
+    private long tick;
+
+    public TimingWheel(long tickMillis, int slotCount, Consumer<T> onExpire, String threadName) {
+        this.tickMillis = tickMillis;
+        this.onExpire = onExpire;
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new HashSet<>());
+        }
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public synchronized Timeout<T> schedule(T item, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        long due = tick + ticks;
+        Timeout<T> timeout = new Timeout<>(this, item, (int) (due % slots.size()), (ticks - 1) / slots.size());
+        slots.get(timeout.slot).add(timeout);
+        return timeout;
+    }
+
+    private synchronized boolean cancel(Timeout<T> timeout) {
+        return slots.get(timeout.slot).remove(timeout);
+    }
+
+    private void run() {
+        long next = System.currentTimeMillis() + tickMillis;
+        while (!Thread.currentThread().isInterrupted()) {
+            long wait = next - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            next += tickMillis;
+
+            List<T> expired = advance();
+            for (T item : expired) {
+                try {
+                    onExpire.accept(item);
+                } catch (RuntimeException e) {
+                    System.err.println("Timing wheel callback failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized List<T> advance() {
+        tick++;
+        List<T> expired = new ArrayList<>();
+        Set<Timeout<T>> slot = slots.get((int) (tick % slots.size()));
+        slot.removeIf(timeout -> {
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                return false;
+            }
+            expired.add(timeout.item);
+            return true;
+        });
+        return expired;
+    }
+
+    public static class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T item;
+        private final int slot;
+        private long rounds;
+
+        private Timeout(TimingWheel<T> wheel, T item, int slot, long rounds) {
+            this.wheel = wheel;
+            this.item = item;
+            this.slot = slot;
+            this.rounds = rounds;
+        }
+
+        // False if it already fired (or was cancelled before)
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
@@ -5,7 +5,23 @@ PRAGMA foreign_keys = OFF;
 DROP VIEW IF EXISTS current_inventory;
 DROP VIEW IF EXISTS popular_woods;
 
+-- Drop full-text indexes (their triggers go with the base tables)
+DROP TABLE IF EXISTS customers_fts;
+DROP TABLE IF EXISTS wands_fts;
+
 -- Drop tables in reverse order of dependency
+DROP TABLE IF EXISTS sales_daily_rollup;
+DROP TABLE IF EXISTS wood_sales_counts;
+DROP TABLE IF EXISTS table_versions;
+DROP TABLE IF EXISTS inventory_snapshots;
+DROP TABLE IF EXISTS inventory_movements;
+DROP TABLE IF EXISTS stock_flush_batches;
+DROP TABLE IF EXISTS reorder_thresholds;
+DROP TABLE IF EXISTS material_demand_stats;
+DROP TABLE IF EXISTS supplier_material_stats;
+DROP TABLE IF EXISTS supplier_stats;
+DROP TABLE IF EXISTS idempotency_keys;
+DROP TABLE IF EXISTS wand_allocations;
 DROP TABLE IF EXISTS price_history;
 DROP TABLE IF EXISTS inventory_log;
 DROP TABLE IF EXISTS sales;
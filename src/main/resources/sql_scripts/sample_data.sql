@@ -38,10 +38,10 @@ INSERT INTO customers (first_name, last_name, birth_date, blood_status, house, s
 -- Insert wands
 INSERT INTO wands (wood_id, core_id, length, flexibility, production_date, condition, special_features, price, status) VALUES
 (1, 1, 11.0, 'supple', '2023-01-20', 'new', 'Slight holly berry scent', 35.0, 'sold'),
-(1, 2, 11.5, 'flexible', '2023-01-20', 'new', 'Unusually warm to the touch', 40.0, 'in_stock'),
-(2, 1, 13.0, 'unyielding', '2023-02-05', 'new', 'Elder flower carving', 75.0, 'in_stock'),
-(3, 3, 10.0, 'rigid', '2023-02-05', 'new', 'Acorn-shaped pommel', 28.0, 'in_stock'),
-(4, 1, 10.5, 'whippy', '2023-02-10', 'new', 'Willow leaf engraving', 32.0, 'in_stock'),
+(1, 2, 11.5, 'flexible', '2023-01-20', 'new', 'Unusually warm to the touch', 40.0, 'sold'),
+(2, 1, 13.0, 'unyielding', '2023-02-05', 'new', 'Elder flower carving', 75.0, 'sold'),
+(3, 3, 10.0, 'rigid', '2023-02-05', 'new', 'Acorn-shaped pommel', 28.0, 'sold'),
+(4, 1, 10.5, 'whippy', '2023-02-10', 'new', 'Willow leaf engraving', 32.0, 'sold'),
 (5, 2, 14.0, 'solid', '2023-02-10', 'new', 'Yew berry inlay', 65.0, 'in_stock');
 
 -- Insert sales
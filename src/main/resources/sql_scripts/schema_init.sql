@@ -59,6 +59,7 @@ CREATE TABLE IF NOT EXISTS component_inventory (
 CREATE TABLE IF NOT EXISTS inventory_deliveries (
     delivery_id INTEGER PRIMARY KEY AUTOINCREMENT,
     delivery_date TEXT DEFAULT (datetime('now')),
+    order_date TEXT, -- when the goods were ordered, for supplier lead times
     supplier_name TEXT NOT NULL,
     received_by TEXT NOT NULL,
     notes TEXT
@@ -119,6 +120,402 @@ CREATE TABLE IF NOT EXISTS price_history (
     FOREIGN KEY (wand_id) REFERENCES wands(wand_id) ON DELETE CASCADE
 );
 
+-- Full-text search over customers (external content table kept in sync by triggers)
+CREATE VIRTUAL TABLE IF NOT EXISTS customers_fts USING fts5(
+    first_name,
+    last_name,
+    wand_license,
+    notes,
+    content='customers',
+    content_rowid='customer_id',
+    tokenize='unicode61 remove_diacritics 2',
+    prefix='2 3'
+);
+
+CREATE TRIGGER IF NOT EXISTS customers_fts_insert AFTER INSERT ON customers BEGIN
+    INSERT INTO customers_fts (rowid, first_name, last_name, wand_license, notes)
+    VALUES (new.customer_id, new.first_name, new.last_name, new.wand_license, new.notes);
+END;
+
+CREATE TRIGGER IF NOT EXISTS customers_fts_delete AFTER DELETE ON customers BEGIN
+    INSERT INTO customers_fts (customers_fts, rowid, first_name, last_name, wand_license, notes)
+    VALUES ('delete', old.customer_id, old.first_name, old.last_name, old.wand_license, old.notes);
+END;
+
+CREATE TRIGGER IF NOT EXISTS customers_fts_update AFTER UPDATE OF first_name, last_name, wand_license, notes ON customers BEGIN
+    INSERT INTO customers_fts (customers_fts, rowid, first_name, last_name, wand_license, notes)
+    VALUES ('delete', old.customer_id, old.first_name, old.last_name, old.wand_license, old.notes);
+    INSERT INTO customers_fts (rowid, first_name, last_name, wand_license, notes)
+    VALUES (new.customer_id, new.first_name, new.last_name, new.wand_license, new.notes);
+END;
+
+-- Full-text search over wand descriptions
+CREATE VIRTUAL TABLE IF NOT EXISTS wands_fts USING fts5(
+    special_features,
+    notes,
+    content='wands',
+    content_rowid='wand_id',
+    tokenize='unicode61 remove_diacritics 2',
+    prefix='2 3'
+);
+
+CREATE TRIGGER IF NOT EXISTS wands_fts_insert AFTER INSERT ON wands BEGIN
+    INSERT INTO wands_fts (rowid, special_features, notes)
+    VALUES (new.wand_id, new.special_features, new.notes);
+END;
+
+CREATE TRIGGER IF NOT EXISTS wands_fts_delete AFTER DELETE ON wands BEGIN
+    INSERT INTO wands_fts (wands_fts, rowid, special_features, notes)
+    VALUES ('delete', old.wand_id, old.special_features, old.notes);
+END;
+
+CREATE TRIGGER IF NOT EXISTS wands_fts_update AFTER UPDATE OF special_features, notes ON wands BEGIN
+    INSERT INTO wands_fts (wands_fts, rowid, special_features, notes)
+    VALUES ('delete', old.wand_id, old.special_features, old.notes);
+    INSERT INTO wands_fts (rowid, special_features, notes)
+    VALUES (new.wand_id, new.special_features, new.notes);
+END;
+
+-- Daily sales rollup, maintained by triggers so revenue reports never scan sales
+CREATE TABLE IF NOT EXISTS sales_daily_rollup (
+    sale_date TEXT NOT NULL,
+    wood_id INTEGER NOT NULL,
+    core_id INTEGER NOT NULL,
+    payment_method TEXT NOT NULL DEFAULT '',
+    units INTEGER NOT NULL DEFAULT 0,
+    revenue REAL NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, wood_id, core_id, payment_method)
+) WITHOUT ROWID;
+
+CREATE TRIGGER IF NOT EXISTS sales_rollup_insert AFTER INSERT ON sales BEGIN
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(new.sale_date), w.wood_id, w.core_id, COALESCE(new.payment_method, ''), 1, new.sale_price
+    FROM wands w WHERE w.wand_id = new.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER IF NOT EXISTS sales_rollup_delete AFTER DELETE ON sales BEGIN
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(old.sale_date), w.wood_id, w.core_id, COALESCE(old.payment_method, ''), -1, -old.sale_price
+    FROM wands w WHERE w.wand_id = old.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER IF NOT EXISTS sales_rollup_update AFTER UPDATE OF wand_id, sale_date, sale_price, payment_method ON sales BEGIN
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(old.sale_date), w.wood_id, w.core_id, COALESCE(old.payment_method, ''), -1, -old.sale_price
+    FROM wands w WHERE w.wand_id = old.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(new.sale_date), w.wood_id, w.core_id, COALESCE(new.payment_method, ''), 1, new.sale_price
+    FROM wands w WHERE w.wand_id = new.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+END;
+
+-- A sold wand re-labelled with another wood or core moves its sales to the new key
+CREATE TRIGGER IF NOT EXISTS sales_rollup_wand_update AFTER UPDATE OF wood_id, core_id ON wands BEGIN
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(s.sale_date), old.wood_id, old.core_id, COALESCE(s.payment_method, ''), -1, -s.sale_price
+    FROM sales s WHERE s.wand_id = old.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+    INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+    SELECT date(s.sale_date), new.wood_id, new.core_id, COALESCE(s.payment_method, ''), 1, s.sale_price
+    FROM sales s WHERE s.wand_id = new.wand_id
+    ON CONFLICT (sale_date, wood_id, core_id, payment_method)
+    DO UPDATE SET units = units + excluded.units, revenue = revenue + excluded.revenue;
+END;
+
+-- Backfill for databases that already had sales before the rollup existed
+INSERT INTO sales_daily_rollup (sale_date, wood_id, core_id, payment_method, units, revenue)
+SELECT date(s.sale_date), w.wood_id, w.core_id, COALESCE(s.payment_method, ''), COUNT(*), SUM(s.sale_price)
+FROM sales s JOIN wands w ON s.wand_id = w.wand_id
+WHERE NOT EXISTS (SELECT 1 FROM sales_daily_rollup)
+GROUP BY date(s.sale_date), w.wood_id, w.core_id, COALESCE(s.payment_method, '');
+
+-- Materialized sales count per wood, backing the popular_woods view
+CREATE TABLE IF NOT EXISTS wood_sales_counts (
+    wood_id INTEGER PRIMARY KEY,
+    sales_count INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (wood_id) REFERENCES wood_types(wood_id) ON DELETE CASCADE
+);
+
+CREATE TRIGGER IF NOT EXISTS wood_sales_insert AFTER INSERT ON sales BEGIN
+    INSERT INTO wood_sales_counts (wood_id, sales_count)
+    SELECT w.wood_id, 1 FROM wands w WHERE w.wand_id = new.wand_id
+    ON CONFLICT (wood_id) DO UPDATE SET sales_count = sales_count + excluded.sales_count;
+END;
+
+CREATE TRIGGER IF NOT EXISTS wood_sales_delete AFTER DELETE ON sales BEGIN
+    UPDATE wood_sales_counts SET sales_count = sales_count - 1
+    WHERE wood_id = (SELECT wood_id FROM wands WHERE wand_id = old.wand_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS wood_sales_update AFTER UPDATE OF wand_id ON sales BEGIN
+    UPDATE wood_sales_counts SET sales_count = sales_count - 1
+    WHERE wood_id = (SELECT wood_id FROM wands WHERE wand_id = old.wand_id);
+    INSERT INTO wood_sales_counts (wood_id, sales_count)
+    SELECT w.wood_id, 1 FROM wands w WHERE w.wand_id = new.wand_id
+    ON CONFLICT (wood_id) DO UPDATE SET sales_count = sales_count + excluded.sales_count;
+END;
+
+CREATE TRIGGER IF NOT EXISTS wood_sales_wand_update AFTER UPDATE OF wood_id ON wands BEGIN
+    UPDATE wood_sales_counts
+    SET sales_count = sales_count - (SELECT COUNT(*) FROM sales WHERE wand_id = old.wand_id)
+    WHERE wood_id = old.wood_id;
+    INSERT INTO wood_sales_counts (wood_id, sales_count)
+    SELECT new.wood_id, COUNT(*) FROM sales WHERE wand_id = new.wand_id HAVING COUNT(*) > 0
+    ON CONFLICT (wood_id) DO UPDATE SET sales_count = sales_count + excluded.sales_count;
+END;
+
+CREATE TRIGGER IF NOT EXISTS wood_sales_wand_delete AFTER DELETE ON wands BEGIN
+    UPDATE wood_sales_counts
+    SET sales_count = sales_count - (SELECT COUNT(*) FROM sales WHERE wand_id = old.wand_id)
+    WHERE wood_id = old.wood_id;
+END;
+
+-- Backfill for databases that already had sales before the counts existed
+INSERT INTO wood_sales_counts (wood_id, sales_count)
+SELECT w.wood_id, COUNT(*)
+FROM sales s JOIN wands w ON s.wand_id = w.wand_id
+WHERE NOT EXISTS (SELECT 1 FROM wood_sales_counts)
+GROUP BY w.wood_id;
+
+-- Change counters per table, bumped by triggers. Cached reports compare them to decide when to recompute
+CREATE TABLE IF NOT EXISTS table_versions (
+    table_name TEXT PRIMARY KEY,
+    version INTEGER NOT NULL DEFAULT 0
+) WITHOUT ROWID;
+
+INSERT OR IGNORE INTO table_versions (table_name) VALUES
+    ('sales'),
+    ('wands'),
+    ('customers'),
+    ('component_inventory'),
+    ('inventory_deliveries'),
+    ('delivery_items');
+
+CREATE TRIGGER IF NOT EXISTS sales_version_insert AFTER INSERT ON sales BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'sales';
+END;
+
+CREATE TRIGGER IF NOT EXISTS sales_version_update AFTER UPDATE ON sales BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'sales';
+END;
+
+CREATE TRIGGER IF NOT EXISTS sales_version_delete AFTER DELETE ON sales BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'sales';
+END;
+
+CREATE TRIGGER IF NOT EXISTS wands_version_insert AFTER INSERT ON wands BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'wands';
+END;
+
+CREATE TRIGGER IF NOT EXISTS wands_version_update AFTER UPDATE ON wands BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'wands';
+END;
+
+CREATE TRIGGER IF NOT EXISTS wands_version_delete AFTER DELETE ON wands BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'wands';
+END;
+
+CREATE TRIGGER IF NOT EXISTS customers_version_insert AFTER INSERT ON customers BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'customers';
+END;
+
+CREATE TRIGGER IF NOT EXISTS customers_version_update AFTER UPDATE ON customers BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'customers';
+END;
+
+CREATE TRIGGER IF NOT EXISTS customers_version_delete AFTER DELETE ON customers BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'customers';
+END;
+
+CREATE TRIGGER IF NOT EXISTS component_inventory_version_insert AFTER INSERT ON component_inventory BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'component_inventory';
+END;
+
+CREATE TRIGGER IF NOT EXISTS component_inventory_version_update AFTER UPDATE ON component_inventory BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'component_inventory';
+END;
+
+CREATE TRIGGER IF NOT EXISTS component_inventory_version_delete AFTER DELETE ON component_inventory BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'component_inventory';
+END;
+
+CREATE TRIGGER IF NOT EXISTS inventory_deliveries_version_insert AFTER INSERT ON inventory_deliveries BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'inventory_deliveries';
+END;
+
+CREATE TRIGGER IF NOT EXISTS inventory_deliveries_version_update AFTER UPDATE ON inventory_deliveries BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'inventory_deliveries';
+END;
+
+CREATE TRIGGER IF NOT EXISTS inventory_deliveries_version_delete AFTER DELETE ON inventory_deliveries BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'inventory_deliveries';
+END;
+
+CREATE TRIGGER IF NOT EXISTS delivery_items_version_insert AFTER INSERT ON delivery_items BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'delivery_items';
+END;
+
+CREATE TRIGGER IF NOT EXISTS delivery_items_version_update AFTER UPDATE ON delivery_items BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'delivery_items';
+END;
+
+CREATE TRIGGER IF NOT EXISTS delivery_items_version_delete AFTER DELETE ON delivery_items BEGIN
+    UPDATE table_versions SET version = version + 1 WHERE table_name = 'delivery_items';
+END;
+
+-- Append-only ledger of every stock change, written in the same transaction as the change itself
+CREATE TABLE IF NOT EXISTS inventory_movements (
+    movement_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    item_type TEXT NOT NULL CHECK(item_type IN ('wood', 'core')),
+    material_id INTEGER NOT NULL,
+    quantity_change INTEGER NOT NULL,
+    reason TEXT NOT NULL CHECK(reason IN ('opening', 'delivery', 'production', 'adjustment')),
+    reference_id INTEGER, -- delivery_id or wand_id, depending on the reason
+    movement_date TEXT NOT NULL DEFAULT (datetime('now'))
+);
+
+-- Stock of one material as of a ledger position, so replays start from the nearest snapshot
+CREATE TABLE IF NOT EXISTS inventory_snapshots (
+    snapshot_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    item_type TEXT NOT NULL CHECK(item_type IN ('wood', 'core')),
+    material_id INTEGER NOT NULL,
+    quantity INTEGER NOT NULL,
+    last_movement_id INTEGER NOT NULL,
+    snapshot_date TEXT NOT NULL
+);
+
+-- Stock rows inserted directly (sample data, manual fixes) enter the ledger as opening balances
+CREATE TRIGGER IF NOT EXISTS inventory_opening_balance AFTER INSERT ON component_inventory
+WHEN new.quantity <> 0 BEGIN
+    INSERT INTO inventory_movements (item_type, material_id, quantity_change, reason)
+    VALUES (new.item_type, new.material_id, new.quantity, 'opening');
+END;
+
+-- Backfill for databases that already had stock before the ledger existed
+INSERT INTO inventory_movements (item_type, material_id, quantity_change, reason)
+SELECT ci.item_type, ci.material_id, ci.quantity, 'opening'
+FROM component_inventory ci
+WHERE ci.quantity <> 0
+AND NOT EXISTS (SELECT 1 FROM inventory_movements m
+                WHERE m.item_type = ci.item_type AND m.material_id = ci.material_id);
+
+-- Write-behind stock journal batches already applied, so replaying a journal after a crash is idempotent
+CREATE TABLE IF NOT EXISTS stock_flush_batches (
+    batch_id TEXT PRIMARY KEY,
+    flushed_at TEXT NOT NULL DEFAULT (datetime('now'))
+) WITHOUT ROWID;
+
+-- Per-material reorder points for low-stock alerts (materials without a row use the default)
+CREATE TABLE IF NOT EXISTS reorder_thresholds (
+    item_type TEXT NOT NULL CHECK(item_type IN ('wood', 'core')),
+    material_id INTEGER NOT NULL,
+    threshold INTEGER NOT NULL CHECK(threshold >= 0),
+    PRIMARY KEY (item_type, material_id)
+) WITHOUT ROWID;
+
+-- Exponentially smoothed daily consumption and delivery rates per material.
+-- Rates cover the days before stats_date, and consumed and delivered hold the running totals of stats_date itself
+CREATE TABLE IF NOT EXISTS material_demand_stats (
+    item_type TEXT NOT NULL CHECK(item_type IN ('wood', 'core')),
+    material_id INTEGER NOT NULL,
+    stats_date TEXT NOT NULL,
+    consumed INTEGER NOT NULL DEFAULT 0,
+    delivered INTEGER NOT NULL DEFAULT 0,
+    consumption_rate REAL NOT NULL DEFAULT 0,
+    delivery_rate REAL NOT NULL DEFAULT 0,
+    PRIMARY KEY (item_type, material_id)
+) WITHOUT ROWID;
+
+-- Per-supplier delivery totals, kept current by triggers so comparisons never aggregate the history
+CREATE TABLE IF NOT EXISTS supplier_stats (
+    supplier_name TEXT NOT NULL COLLATE NOCASE PRIMARY KEY,
+    deliveries INTEGER NOT NULL DEFAULT 0,
+    total_units INTEGER NOT NULL DEFAULT 0,
+    lead_time_days_total REAL NOT NULL DEFAULT 0,
+    lead_time_samples INTEGER NOT NULL DEFAULT 0, -- deliveries that had an order date
+    first_delivery_date TEXT,
+    last_delivery_date TEXT
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS supplier_material_stats (
+    supplier_name TEXT NOT NULL COLLATE NOCASE,
+    item_type TEXT NOT NULL CHECK(item_type IN ('wood', 'core')),
+    material_id INTEGER NOT NULL,
+    units INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (supplier_name, item_type, material_id)
+) WITHOUT ROWID;
+
+CREATE TRIGGER IF NOT EXISTS supplier_stats_delivery AFTER INSERT ON inventory_deliveries BEGIN
+    INSERT INTO supplier_stats (supplier_name, deliveries, lead_time_days_total, lead_time_samples,
+                                first_delivery_date, last_delivery_date)
+    VALUES (new.supplier_name, 1, COALESCE(julianday(new.delivery_date) - julianday(new.order_date), 0),
+            new.order_date IS NOT NULL, new.delivery_date, new.delivery_date)
+    ON CONFLICT(supplier_name) DO UPDATE SET
+        deliveries = deliveries + 1,
+        lead_time_days_total = lead_time_days_total + excluded.lead_time_days_total,
+        lead_time_samples = lead_time_samples + excluded.lead_time_samples,
+        first_delivery_date = MIN(first_delivery_date, excluded.first_delivery_date),
+        last_delivery_date = MAX(last_delivery_date, excluded.last_delivery_date);
+END;
+
+CREATE TRIGGER IF NOT EXISTS supplier_stats_items AFTER INSERT ON delivery_items BEGIN
+    INSERT INTO supplier_material_stats (supplier_name, item_type, material_id, units)
+    SELECT supplier_name, new.item_type, new.material_id, new.quantity
+    FROM inventory_deliveries WHERE delivery_id = new.delivery_id
+    ON CONFLICT(supplier_name, item_type, material_id) DO UPDATE SET units = units + excluded.units;
+    UPDATE supplier_stats SET total_units = total_units + new.quantity
+    WHERE supplier_name = (SELECT supplier_name FROM inventory_deliveries WHERE delivery_id = new.delivery_id);
+END;
+
+-- Backfill for suppliers whose deliveries predate the statistics
+INSERT OR IGNORE INTO supplier_stats (supplier_name, deliveries, total_units, lead_time_days_total,
+                                      lead_time_samples, first_delivery_date, last_delivery_date)
+SELECT d.supplier_name, COUNT(*),
+       COALESCE(SUM((SELECT SUM(quantity) FROM delivery_items di WHERE di.delivery_id = d.delivery_id)), 0),
+       COALESCE(SUM(julianday(d.delivery_date) - julianday(d.order_date)), 0),
+       COUNT(d.order_date), MIN(d.delivery_date), MAX(d.delivery_date)
+FROM inventory_deliveries d
+GROUP BY d.supplier_name COLLATE NOCASE;
+
+INSERT OR IGNORE INTO supplier_material_stats (supplier_name, item_type, material_id, units)
+SELECT d.supplier_name, di.item_type, di.material_id, SUM(di.quantity)
+FROM delivery_items di
+JOIN inventory_deliveries d ON di.delivery_id = d.delivery_id
+GROUP BY d.supplier_name COLLATE NOCASE, di.item_type, di.material_id;
+
+-- Client-supplied keys of purchases and deliveries already written, so retried requests are not applied twice
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    operation TEXT NOT NULL CHECK(operation IN ('purchase', 'delivery')),
+    idempotency_key TEXT NOT NULL,
+    result_id INTEGER, -- sale_id or delivery_id, set in the same transaction that claimed the key
+    fingerprint TEXT, -- hash of the request, so a key reused for a different one is refused
+    created_at TEXT NOT NULL DEFAULT (datetime('now')),
+    PRIMARY KEY (operation, idempotency_key)
+) WITHOUT ROWID;
+
+-- Holder and expiry of each wand reserved at the counter. Checkout sells a reserved wand only to its holder
+CREATE TABLE IF NOT EXISTS wand_allocations (
+    wand_id INTEGER PRIMARY KEY,
+    allocation_token TEXT NOT NULL,
+    held_by TEXT NOT NULL,
+    expires_at TEXT NOT NULL, -- UTC, in the format of datetime('now')
+    FOREIGN KEY (wand_id) REFERENCES wands(wand_id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_wand_allocations_expires ON wand_allocations(expires_at);
+
+-- Backfill for wands sold before checkout marked them, so they no longer look available
+UPDATE wands SET status = 'sold'
+WHERE status IN ('in_stock', 'reserved') AND wand_id IN (SELECT wand_id FROM sales);
+
 -- Views and indexes
 CREATE VIEW IF NOT EXISTS current_inventory AS
 SELECT
@@ -139,20 +536,19 @@ JOIN
 WHERE
     w.status = 'in_stock';
 
-CREATE VIEW IF NOT EXISTS popular_woods AS
+DROP VIEW IF EXISTS popular_woods;
+CREATE VIEW popular_woods AS
 SELECT
     wt.name AS wood_name,
-    COUNT(s.wand_id) AS sales_count
+    wsc.sales_count
 FROM
-    wood_types wt
+    wood_sales_counts wsc
 JOIN
-    wands w ON wt.wood_id = w.wood_id
-JOIN
-    sales s ON w.wand_id = s.wand_id
-GROUP BY
-    wt.name
+    wood_types wt ON wsc.wood_id = wt.wood_id
+WHERE
+    wsc.sales_count > 0
 ORDER BY
-    sales_count DESC;
+    wsc.sales_count DESC;
 
 CREATE INDEX IF NOT EXISTS idx_wands_wood ON wands(wood_id);
 CREATE INDEX IF NOT EXISTS idx_wands_core ON wands(core_id);
@@ -160,4 +556,11 @@ CREATE INDEX IF NOT EXISTS idx_wands_status ON wands(status);
 CREATE INDEX IF NOT EXISTS idx_sales_customer ON sales(customer_id);
 CREATE INDEX IF NOT EXISTS idx_sales_date ON sales(sale_date);
 CREATE INDEX IF NOT EXISTS idx_component_inventory_item ON component_inventory(item_id);
+CREATE INDEX IF NOT EXISTS idx_wood_sales_counts_count ON wood_sales_counts(sales_count DESC);
+CREATE INDEX IF NOT EXISTS idx_price_history_wand_date ON price_history(wand_id, change_date);
+CREATE INDEX IF NOT EXISTS idx_inventory_movements_material ON inventory_movements(item_type, material_id, movement_id);
+CREATE INDEX IF NOT EXISTS idx_inventory_snapshots_material ON inventory_snapshots(item_type, material_id, last_movement_id);
+CREATE INDEX IF NOT EXISTS idx_inventory_deliveries_date ON inventory_deliveries(delivery_date);
+CREATE INDEX IF NOT EXISTS idx_delivery_items_delivery ON delivery_items(delivery_id);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys(created_at);
 
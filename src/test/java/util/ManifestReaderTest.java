@@ -0,0 +1,50 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManifestReaderTest {
+
+    @Test
+    void csvWithByteOrderMarkKeepsFirstColumnName() throws IOException {
+        try (ManifestReader reader = ManifestReader.csv(new StringReader("\uFEFFitem_type,material_id,quantity\n"
+                + "wood,3,12\n"))) {
+            Map<String, String> record = reader.next();
+            assertEquals("wood", record.get("item_type"));
+            assertEquals("12", record.get("quantity"));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void jsonWithByteOrderMarkIsParsed() throws IOException {
+        try (ManifestReader reader = ManifestReader.json(new StringReader("\uFEFF[{\"item_type\": \"core\", "
+                + "\"material_id\": 2, \"quantity\": 5}]"))) {
+            Map<String, String> record = reader.next();
+            assertEquals("core", record.get("item_type"));
+            assertEquals("5", record.get("quantity"));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void jsonAllowsWhitespaceAfterArray() throws IOException {
+        try (ManifestReader reader = ManifestReader.json(new StringReader("[]\n  \n"))) {
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void jsonRejectsContentAfterArray() throws IOException {
+        try (ManifestReader reader = ManifestReader.json(new StringReader("[{\"quantity\": 1}]\n[{\"quantity\": 2}]"))) {
+            assertNotNull(reader.next());
+            IOException e = assertThrows(IOException.class, reader::next);
+            assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+        }
+    }
+}